@@ -0,0 +1,130 @@
+package com.mct.components.baseui;
+
+import androidx.annotation.NonNull;
+import androidx.fragment.app.FragmentManager;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Commit ids of the back stack of a {@link BaseActivity}, with the positions of every fragment
+ * class, so looking up a class is O(1) and popping n entries is O(n).
+ * <p>
+ * It is updated when a navigation is enqueued, ahead of the {@link FragmentManager}, and
+ * {@link #sync(FragmentManager) checked} against it once the navigation ran.
+ */
+final class BackStackIndex {
+
+    private int[] ids = new int[8];
+    private String[] names = new String[8];
+    private int size;
+    private final Map<String, Positions> positionsByName = new HashMap<>();
+
+    int size() {
+        return size;
+    }
+
+    int idAt(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("position " + position + ", size " + size);
+        }
+        return ids[position];
+    }
+
+    void push(int id, @NonNull String name) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+        ids[size] = id;
+        names[size] = name;
+        Positions positions = positionsByName.get(name);
+        if (positions == null) {
+            positions = new Positions();
+            positionsByName.put(name, positions);
+        }
+        positions.push(size);
+        size++;
+    }
+
+    void pop() {
+        if (size > 0) {
+            truncate(size - 1);
+        }
+    }
+
+    /**
+     * Drop the entries from this position to the top.
+     */
+    void truncate(int newSize) {
+        while (size > newSize) {
+            size--;
+            Positions positions = positionsByName.get(names[size]);
+            positions.pop();
+            if (positions.size == 0) {
+                positionsByName.remove(names[size]);
+            }
+            names[size] = null;
+        }
+    }
+
+    void clear() {
+        truncate(0);
+    }
+
+    /**
+     * @return the top most position of this name, -1 if none
+     */
+    int lastIndexOf(@NonNull String name) {
+        Positions positions = positionsByName.get(name);
+        return positions == null ? -1 : positions.top();
+    }
+
+    /**
+     * @return entries of this name
+     */
+    int count(@NonNull String name) {
+        Positions positions = positionsByName.get(name);
+        return positions == null ? 0 : positions.size;
+    }
+
+    /**
+     * Rebuild from the back stack of the fragment manager if it drifted away.
+     *
+     * @return true if it was rebuilt
+     */
+    boolean sync(@NonNull FragmentManager fm) {
+        int count = fm.getBackStackEntryCount();
+        if (count == size && (size == 0 || fm.getBackStackEntryAt(size - 1).getId() == ids[size - 1])) {
+            return false;
+        }
+        clear();
+        for (int i = 0; i < count; i++) {
+            FragmentManager.BackStackEntry entry = fm.getBackStackEntryAt(i);
+            String name = entry.getName();
+            push(entry.getId(), name != null ? name : "");
+        }
+        return true;
+    }
+
+    private static class Positions {
+        int[] values = new int[2];
+        int size;
+
+        void push(int position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+
+        void pop() {
+            size--;
+        }
+
+        int top() {
+            return values[size - 1];
+        }
+    }
+}
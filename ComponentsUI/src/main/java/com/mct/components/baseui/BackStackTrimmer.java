@@ -0,0 +1,140 @@
+package com.mct.components.baseui;
+
+import android.os.Bundle;
+import android.view.View;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentManager;
+import androidx.fragment.app.FragmentTransaction;
+import androidx.lifecycle.Lifecycle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Trims the fragments deep in the back stack of the container of a {@link BaseActivity}.
+ * <p>
+ * Two kinds of fragments sit under the top one. The hidden ones of the fragment cache mode keep
+ * their view: a trimmed one is capped to CREATED, its view state is saved and its view destroyed,
+ * and the transaction that shows it again raises its max lifecycle so its view is created again
+ * from the saved state. The ones left by a replace have no view any more, but the instance, its
+ * presenters and its data stay until it is popped: a trimmed one is only told to release them,
+ * see {@link BaseFragment#onTrimmed()}.
+ * <p>
+ * A trimmed fragment stays trimmed until its view is created again.
+ */
+final class BackStackTrimmer extends FragmentManager.FragmentLifecycleCallbacks {
+
+    // main thread only
+    private final Set<Fragment> trimmed = Collections.newSetFromMap(new WeakHashMap<>());
+    // left by a replace, the oldest first
+    private final List<Fragment> stacked = new ArrayList<>();
+    private int containerId;
+    private long trimmedCount;
+    private long restoredCount;
+
+    void setContainerId(int containerId) {
+        this.containerId = containerId;
+    }
+
+    /**
+     * @param keep fragments under the top one left untrimmed, the closest to the top first
+     */
+    @MainThread
+    void trim(@NonNull FragmentManager fm, int keep) {
+        if (fm.isDestroyed()) {
+            return;
+        }
+        List<Fragment> fragments = fm.getFragments();
+        FragmentTransaction transaction = null;
+        int kept = 0;
+        for (int i = fragments.size() - 1; i >= 0; i--) {
+            Fragment fragment = fragments.get(i);
+            if (fragment.getId() != containerId || !fragment.isHidden() || fragment.getView() == null) {
+                continue;
+            }
+            if (kept < keep) {
+                kept++;
+                continue;
+            }
+            if (transaction == null) {
+                transaction = fm.beginTransaction();
+                transaction.setReorderingAllowed(true);
+            }
+            transaction.setMaxLifecycle(fragment, Lifecycle.State.CREATED);
+            dispatchTrimmed(fragment);
+        }
+        for (int i = stacked.size() - 1; i >= 0; i--) {
+            Fragment fragment = stacked.get(i);
+            if (kept < keep) {
+                kept++;
+            } else if (!trimmed.contains(fragment)) {
+                dispatchTrimmed(fragment);
+            }
+        }
+        if (transaction != null) {
+            // losing it with the saved state is harmless, a restored activity creates the views again
+            transaction.commitAllowingStateLoss();
+        }
+    }
+
+    @MainThread
+    void clear() {
+        stacked.clear();
+        trimmed.clear();
+    }
+
+    long getTrimmedCount() {
+        return trimmedCount;
+    }
+
+    long getRestoredCount() {
+        return restoredCount;
+    }
+
+    private void dispatchTrimmed(@NonNull Fragment fragment) {
+        trimmed.add(fragment);
+        trimmedCount++;
+        if (fragment instanceof BaseFragment) {
+            ((BaseFragment) fragment).dispatchTrimmed();
+        }
+    }
+
+    @Override
+    public void onFragmentCreated(@NonNull FragmentManager fm, @NonNull Fragment f,
+                                  @Nullable Bundle savedInstanceState) {
+        // restored with the activity into the back stack, without a view
+        if (savedInstanceState != null && f.getId() == containerId && !f.isAdded()) {
+            stacked.add(f);
+        }
+    }
+
+    @Override
+    public void onFragmentViewCreated(@NonNull FragmentManager fm, @NonNull Fragment f, @NonNull View v,
+                                      @Nullable Bundle savedInstanceState) {
+        stacked.remove(f);
+        if (trimmed.remove(f)) {
+            restoredCount++;
+        }
+    }
+
+    @Override
+    public void onFragmentViewDestroyed(@NonNull FragmentManager fm, @NonNull Fragment f) {
+        // a hidden fragment losing its view was trimmed, it is still added
+        if (f.getId() == containerId && !f.isHidden() && f.getActivity() != null && !f.getActivity().isFinishing()) {
+            stacked.add(f);
+        }
+    }
+
+    @Override
+    public void onFragmentDestroyed(@NonNull FragmentManager fm, @NonNull Fragment f) {
+        stacked.remove(f);
+        trimmed.remove(f);
+    }
+}
@@ -1,26 +1,33 @@
 package com.mct.components.baseui;
 
 import android.content.Context;
-import android.graphics.Rect;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.inputmethod.InputMethodManager;
 
 import androidx.annotation.IdRes;
+import androidx.annotation.LayoutRes;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.AppCompatEditText;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentTransaction;
+import androidx.lifecycle.Lifecycle;
 
 import com.mct.components.R;
 
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Objects;
 
 public abstract class BaseActivity extends AppCompatActivity implements BaseFragmentManager {
 
@@ -29,8 +36,28 @@ public abstract class BaseActivity extends AppCompatActivity implements BaseFrag
     // disable auto hide soft input 1 time
     static boolean sPendingDisableFragmentAutoHideSoftInput;
 
+    // time for the IME to show or hide after a call, before its state is trusted from the layout again
+    private static final long IME_REQUEST_TIMEOUT_MS = 500;
+
     private boolean isBackPress;
-    private final List<Integer> fragmentIds = new ArrayList<>();
+    private final BackStackIndex backStackIndex = new BackStackIndex();
+    private final FragmentManager.OnBackStackChangedListener backStackListener = this::onBackStackChanged;
+    private final BackStackTrimmer backStackTrimmer = new BackStackTrimmer();
+    private int backStackBudget = Integer.MAX_VALUE;
+    private int fragmentCacheSize;
+    // tags of the cached fragments of the container, least recently shown first
+    private final LinkedHashMap<String, Boolean> cachedFragmentTags = new LinkedHashMap<>(8, 0.75f, true);
+    private final FragmentPrewarmer prewarmer = new FragmentPrewarmer();
+    private final RetainedViewCache retainedViewCache = new RetainedViewCache();
+    private NavigationTracer.Session navigationTracer;
+    private final SoftInputTracker softInputTracker = new SoftInputTracker();
+    private InputMethodManager inputMethodManager;
+    private View fakeFocusView;
+    // state asked by the last IME call, until the tracker sees it or it times out
+    private boolean isImeRequestedVisible;
+    private long imeRequestedAt;
+    private long imeCallCount;
+    private long skippedImeCallCount;
 
     /**
      * The Container to replace fragment
@@ -66,18 +93,233 @@ public abstract class BaseActivity extends AppCompatActivity implements BaseFrag
         }
     }
 
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        FragmentManager fm = getSupportFragmentManager();
+        // the back stack is restored with the activity
+        backStackIndex.sync(fm);
+        fm.addOnBackStackChangedListener(backStackListener);
+        navigationTracer = new NavigationTracer.Session(getContainerId());
+        navigationTracer.attach(fm);
+        backStackTrimmer.setContainerId(getContainerId());
+        fm.registerFragmentLifecycleCallbacks(backStackTrimmer, false);
+    }
+
+    @Override
+    protected void onPostCreate(@Nullable Bundle savedInstanceState) {
+        super.onPostCreate(savedInstanceState);
+        // after setContentView of the subclass, the decor view must not be installed earlier
+        softInputTracker.attach((ViewGroup) getWindow().getDecorView());
+    }
+
+    @Override
+    protected void onDestroy() {
+        softInputTracker.detach();
+        getSupportFragmentManager().removeOnBackStackChangedListener(backStackListener);
+        navigationTracer.detach();
+        getSupportFragmentManager().unregisterFragmentLifecycleCallbacks(backStackTrimmer);
+        backStackTrimmer.clear();
+        prewarmer.release();
+        retainedViewCache.clear();
+        super.onDestroy();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level == TRIM_MEMORY_RUNNING_LOW || level == TRIM_MEMORY_RUNNING_CRITICAL || level >= TRIM_MEMORY_BACKGROUND) {
+            trimFragmentCache(0);
+            trimBackStack(0);
+            retainedViewCache.trim(0);
+        } else if (level == TRIM_MEMORY_RUNNING_MODERATE) {
+            trimBackStack(backStackBudget / 2);
+            retainedViewCache.trim(retainedViewCache.getLimit() / 2);
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////////////
     // FRAGMENT MANAGER
     ///////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Enable the show / hide navigation mode.
+     * <p>
+     * {@link #replaceFragment(Fragment)} then keeps the fragments it leaves attached but hidden
+     * and capped to STARTED, and shows the cached instance of the same class again instead of
+     * the given one, without inflating its view again. A cached instance with other arguments
+     * than the given fragment is replaced by it. {@link #replaceFragmentToStack(Fragment)}
+     * hides the current fragment instead of replacing it, so popping back is instant too.
+     * <p>
+     * Beside the fragment shown, at most maxSize fragments are cached, the least recently shown
+     * is removed first. The cache is also dropped when the system runs low on memory.
+     *
+     * @param maxSize max hidden fragments kept, 0 to always replace (default)
+     */
+    protected void setFragmentCacheSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize < 0");
+        }
+        fragmentCacheSize = maxSize;
+        trimFragmentCache(maxSize);
+    }
+
+    public int getFragmentCacheSize() {
+        return fragmentCacheSize;
+    }
+
     @Override
     public int getBackStackCount() {
         return getSupportFragmentManager().getBackStackEntryCount();
     }
 
+    /**
+     * @return true if a fragment of this class is in the back stack
+     */
+    public boolean isInBackStack(@NonNull Class<? extends Fragment> cls) {
+        return backStackIndex.lastIndexOf(cls.getName()) >= 0;
+    }
+
+    /**
+     * @return entries of this fragment class in the back stack
+     */
+    public int getBackStackCount(@NonNull Class<? extends Fragment> cls) {
+        return backStackIndex.count(cls.getName());
+    }
+
+    /**
+     * @return top most position of this fragment class in the back stack, -1 if none
+     */
+    public int getBackStackPosition(@NonNull Class<? extends Fragment> cls) {
+        return backStackIndex.lastIndexOf(cls.getName());
+    }
+
+    /**
+     * Budget of the fragments under the current one in the container keeping what they hold, the
+     * closest to the top first. The deeper ones are trimmed:
+     * <ul>
+     * <li>a fragment left by a replace has no view, but its instance keeps its presenters and its
+     * data until it is popped. A {@link BaseFragment} is told to release them with
+     * {@link BaseFragment#onTrimmed()} and to create them again with
+     * {@link BaseFragment#onRestored()} when it is popped back.</li>
+     * <li>a hidden fragment of the fragment cache mode (see {@link #setFragmentCacheSize(int)})
+     * also has its view state saved and its view released. Its view is created again from the
+     * saved state when it is shown, by a pop or by the fragment cache.</li>
+     * </ul>
+     * Under memory pressure the budget is halved, then dropped to 0.
+     *
+     * @param maxFragments fragments under the current one left untrimmed, unbounded by default
+     */
+    protected void setBackStackBudget(int maxFragments) {
+        if (maxFragments < 0) {
+            throw new IllegalArgumentException("maxFragments < 0");
+        }
+        backStackBudget = maxFragments;
+        trimBackStack(maxFragments);
+    }
+
+    /**
+     * @return fragments trimmed by the {@link #setBackStackBudget(int) budget}
+     */
+    public long getTrimmedFragmentCount() {
+        return backStackTrimmer.getTrimmedCount();
+    }
+
+    /**
+     * @return trimmed fragments whose view was created again once shown
+     */
+    public long getRestoredFragmentCount() {
+        return backStackTrimmer.getRestoredCount();
+    }
+
+    /**
+     * Max views kept detached for the {@link BaseFragment#isRetainView() retaining} fragments of
+     * the back stack, across the activity. Over it the oldest view is dropped and its fragment
+     * inflates again when popped. Under memory pressure it is halved, then dropped to 0.
+     *
+     * @param maxViews 0 to retain nothing, 2 by default
+     */
+    protected void setRetainedViewLimit(int maxViews) {
+        if (maxViews < 0) {
+            throw new IllegalArgumentException("maxViews < 0");
+        }
+        retainedViewCache.setLimit(maxViews);
+    }
+
+    public int getRetainedViewLimit() {
+        return retainedViewCache.getLimit();
+    }
+
+    /**
+     * @return fragment views currently kept for the back stack
+     */
+    public int getRetainedViewCount() {
+        return retainedViewCache.size();
+    }
+
+    /**
+     * @return back stack returns that reused the retained view instead of inflating
+     */
+    public long getRetainedViewHitCount() {
+        return retainedViewCache.getHitCount();
+    }
+
+    @NonNull
+    RetainedViewCache getRetainedViewCache() {
+        return retainedViewCache;
+    }
+
+    /**
+     * Open the jank watch and the trace span of a navigation call, must be paired with
+     * {@link #endNavigationCall(long, String)} in a finally block.
+     *
+     * @param destination fragment shown by the call, null for a pop
+     * @return token for {@link #endNavigationCall(long, String)}
+     */
+    private long beginNavigationCall(@NonNull String action, @Nullable Class<?> destination) {
+        long token = JankWatchdog.begin();
+        navigationTracer.begin(action, destination);
+        return token;
+    }
+
+    private void endNavigationCall(long token, @NonNull String action) {
+        navigationTracer.end();
+        JankWatchdog.end(token, getClass(), action);
+    }
+
+    private void trimBackStack(int keep) {
+        if (backStackBudget != Integer.MAX_VALUE || keep == 0) {
+            backStackTrimmer.trim(getSupportFragmentManager(), Math.min(keep, backStackBudget));
+        }
+    }
+
+    /**
+     * Called once the pending navigation ran. The index is ahead of the fragment manager while
+     * a navigation is pending, from here on both must match.
+     */
+    private void onBackStackChanged() {
+        if (backStackIndex.sync(getSupportFragmentManager())) {
+            Log.w(TAG, "Back stack index out of sync, rebuilt from the fragment manager");
+        }
+        trimBackStack(backStackBudget);
+        // the fragments popped by this change were destroyed, only the back stack views are left
+        retainedViewCache.trimToLimit();
+    }
+
     @Override
     public Fragment getCurrentFragment() {
-        return getSupportFragmentManager().findFragmentById(getContainerId());
+        if (fragmentCacheSize == 0) {
+            return getSupportFragmentManager().findFragmentById(getContainerId());
+        }
+        // the cached fragments stay added, the last added one may be hidden
+        List<Fragment> fragments = getSupportFragmentManager().getFragments();
+        for (int i = fragments.size() - 1; i >= 0; i--) {
+            Fragment fragment = fragments.get(i);
+            if (fragment.getId() == getContainerId() && !fragment.isHidden()) {
+                return fragment;
+            }
+        }
+        return null;
     }
 
     @SuppressWarnings("unchecked")
@@ -97,18 +339,20 @@ public abstract class BaseActivity extends AppCompatActivity implements BaseFrag
 
     @Override
     public void replaceFragment(@NonNull Fragment fragment, Anim anim) {
-        tryAutoHideSoftInput();
-        if (getBackStackCount() > 0) {
-            sPendingDisableFragmentAutoHideSoftInput = true;
-            popLastFragment();
-            sPendingDisableFragmentAutoHideSoftInput = true;
-            replaceFragmentToStack(fragment, anim);
-            return;
+        long token = beginNavigationCall("replaceFragment", fragment.getClass());
+        try {
+            tryAutoHideSoftInput();
+            // the index counts the navigations enqueued and not executed yet
+            if (backStackIndex.size() > 0) {
+                // executed together with the pop, the popped fragment is not shown in between
+                enqueuePopLast();
+                commitToStack(fragment, anim, canHideAfterPop());
+                return;
+            }
+            commitReplace(fragment, anim, true);
+        } finally {
+            endNavigationCall(token, "replaceFragment");
         }
-        FragmentTransaction transaction = getSupportFragmentManager().beginTransaction();
-        setAnim(transaction, anim);
-        transaction.replace(getContainerId(), fragment, fragment.getClass().getName());
-        transaction.commit();
     }
 
     @Override
@@ -118,14 +362,13 @@ public abstract class BaseActivity extends AppCompatActivity implements BaseFrag
 
     @Override
     public void replaceFragmentToStack(@NonNull Fragment fragment, Anim anim) {
-        tryAutoHideSoftInput();
-        FragmentTransaction transaction = getSupportFragmentManager().beginTransaction();
-        setAnim(transaction, anim);
-        transaction.replace(getContainerId(), fragment, fragment.getClass().getName());
-        transaction.addToBackStack(fragment.getClass().getName());
-        int id = transaction.commit();
-        fragmentIds.add(id);
-        Log.e(TAG, "replaceFragmentToStack: " + id + " : " + fragment.getClass().getName());
+        long token = beginNavigationCall("replaceFragmentToStack", fragment.getClass());
+        try {
+            tryAutoHideSoftInput();
+            commitToStack(fragment, anim, true);
+        } finally {
+            endNavigationCall(token, "replaceFragmentToStack");
+        }
     }
 
     @Override
@@ -135,15 +378,61 @@ public abstract class BaseActivity extends AppCompatActivity implements BaseFrag
 
     @Override
     public void replaceAndClearBackStack(Fragment fragment, Anim anim) {
-        clearBackStack();
-        replaceFragment(fragment, anim);
+        long token = beginNavigationCall("replaceAndClearBackStack", fragment.getClass());
+        try {
+            beginNavigation().clearBackStack().replaceFragment(fragment, anim).commit();
+        } finally {
+            endNavigationCall(token, "replaceAndClearBackStack");
+        }
+    }
+
+    /**
+     * Inflate the view of a {@link BaseFragment} off the main thread ahead of its navigation,
+     * the next {@link BaseFragment#onCreateView} of a fragment with this
+     * {@link BaseFragment#getLayoutId() layout id} uses it.
+     * <p>
+     * Like {@code AsyncLayoutInflater} the factory of this activity is not used off the main
+     * thread, so the AppCompat widgets are not substituted: only prewarm the layouts naming
+     * their widgets explicitly (such as {@code androidx.appcompat.widget.AppCompatTextView}) or
+     * fine with the platform ones.
+     *
+     * @param layoutId layout of the fragment about to be shown
+     */
+    public void prewarm(@LayoutRes int layoutId) {
+        if (layoutId != 0) {
+            prewarmer.prewarm(this, layoutId);
+        }
+    }
+
+    /**
+     * @return fragment views created from a {@link #prewarm(int) prewarmed} view
+     */
+    public long getPrewarmHitCount() {
+        return prewarmer.getHitCount();
+    }
+
+    /**
+     * @return fragment views with a layout id inflated on the main thread, not prewarmed
+     */
+    public long getPrewarmMissCount() {
+        return prewarmer.getMissCount();
+    }
+
+    @Nullable
+    View takePrewarmedView(@LayoutRes int layoutId) {
+        return prewarmer.take(layoutId);
     }
 
     @Override
     public void clearBackStack() {
-        if (getBackStackCount() > 0) {
-            fragmentIds.clear();
-            getSupportFragmentManager().popBackStackImmediate(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+        long token = beginNavigationCall("clearBackStack", null);
+        try {
+            if (backStackIndex.size() > 0) {
+                backStackIndex.clear();
+                getSupportFragmentManager().popBackStackImmediate(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+            }
+        } finally {
+            endNavigationCall(token, "clearBackStack");
         }
     }
 
@@ -152,11 +441,13 @@ public abstract class BaseActivity extends AppCompatActivity implements BaseFrag
      */
     @Override
     public void popLastFragment() {
-        tryAutoHideSoftInput();
-        if (!fragmentIds.isEmpty()) {
-            fragmentIds.remove(fragmentIds.size() - 1);
+        long token = beginNavigationCall("popLastFragment", null);
+        try {
+            tryAutoHideSoftInput();
+            enqueuePopLast();
+        } finally {
+            endNavigationCall(token, "popLastFragment");
         }
-        getSupportFragmentManager().popBackStack();
     }
 
     /**
@@ -164,10 +455,16 @@ public abstract class BaseActivity extends AppCompatActivity implements BaseFrag
      */
     @Override
     public void popFragmentToPosition(int position) {
-        tryAutoHideSoftInput();
-        if (fragmentIds.size() > position) {
-            fragmentIds.subList(position + 1, fragmentIds.size()).clear();
-            getSupportFragmentManager().popBackStack(fragmentIds.remove(position), FragmentManager.POP_BACK_STACK_INCLUSIVE);
+        long token = beginNavigationCall("popFragmentToPosition", null);
+        try {
+            tryAutoHideSoftInput();
+            if (position >= 0 && backStackIndex.size() > position) {
+                int id = backStackIndex.idAt(position);
+                backStackIndex.truncate(position);
+                getSupportFragmentManager().popBackStack(id, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+            }
+        } finally {
+            endNavigationCall(token, "popFragmentToPosition");
         }
     }
 
@@ -176,14 +473,19 @@ public abstract class BaseActivity extends AppCompatActivity implements BaseFrag
      */
     @Override
     public void popFragmentByAmount(int amount) {
-        tryAutoHideSoftInput();
-        int size = fragmentIds.size();
-        if (size - amount < 0) {
-            fragmentIds.clear();
-            clearBackStack();
-        } else if (size > size - amount) {
-            fragmentIds.subList(size - amount + 1, size).clear();
-            getSupportFragmentManager().popBackStack((fragmentIds.remove(size - amount)), FragmentManager.POP_BACK_STACK_INCLUSIVE);
+        long token = beginNavigationCall("popFragmentByAmount", null);
+        try {
+            tryAutoHideSoftInput();
+            int size = backStackIndex.size();
+            if (size - amount < 0) {
+                clearBackStack();
+            } else if (amount > 0) {
+                int id = backStackIndex.idAt(size - amount);
+                backStackIndex.truncate(size - amount);
+                getSupportFragmentManager().popBackStack(id, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+            }
+        } finally {
+            endNavigationCall(token, "popFragmentByAmount");
         }
     }
 
@@ -204,10 +506,228 @@ public abstract class BaseActivity extends AppCompatActivity implements BaseFrag
     }
 
     private void popBackStackFragment(@NonNull Class<? extends Fragment> cls, int flag) {
-        tryAutoHideSoftInput();
-        boolean isPopped = getSupportFragmentManager().popBackStackImmediate(cls.getName(), flag);
-        if (isPopped && fragmentIds.size() > getBackStackCount()) {
-            fragmentIds.subList(getBackStackCount(), fragmentIds.size()).clear();
+        long token = beginNavigationCall("popToFragment", null);
+        try {
+            tryAutoHideSoftInput();
+            int position = backStackIndex.lastIndexOf(cls.getName());
+            if (position < 0) {
+                return;
+            }
+            boolean inclusive = (flag & FragmentManager.POP_BACK_STACK_INCLUSIVE) != 0;
+            if (!inclusive && position == backStackIndex.size() - 1) {
+                return;
+            }
+            int id = backStackIndex.idAt(position);
+            backStackIndex.truncate(inclusive ? position : position + 1);
+            getSupportFragmentManager().popBackStackImmediate(id, flag);
+        } finally {
+            endNavigationCall(token, "popToFragment");
+        }
+    }
+
+    /**
+     * Start a batch of navigation calls run as one step: the pops and transactions are committed
+     * with reordering allowed and executed together, so the fragments in between are never
+     * created, started or animated. The soft input is hidden once. In the fragment cache mode the
+     * pops run before the next fragment is added, a replace would remove the cached fragments.
+     * <pre>
+     * beginNavigation().clearBackStack().replaceFragment(home).replaceFragmentToStack(detail).commit();
+     * </pre>
+     */
+    @NonNull
+    public Navigation beginNavigation() {
+        return new Navigation();
+    }
+
+    private void commitReplace(@NonNull Fragment fragment, @NonNull Anim anim, boolean canHide) {
+        if (canHide && fragmentCacheSize > 0) {
+            showCachedFragment(fragment, anim);
+            return;
+        }
+        FragmentTransaction transaction = getSupportFragmentManager().beginTransaction();
+        transaction.setReorderingAllowed(true);
+        setAnim(transaction, anim);
+        transaction.replace(getContainerId(), fragment, fragment.getClass().getName());
+        transaction.commit();
+    }
+
+    /**
+     * @param canHide false when a pop is pending, the current fragment is on its way out
+     */
+    private void commitToStack(@NonNull Fragment fragment, @NonNull Anim anim, boolean canHide) {
+        FragmentTransaction transaction = getSupportFragmentManager().beginTransaction();
+        transaction.setReorderingAllowed(true);
+        setAnim(transaction, anim);
+        Fragment current = canHide && fragmentCacheSize > 0 ? getCurrentFragment() : null;
+        if (current != null) {
+            // popping shows it back with its view
+            transaction.hide(current);
+            transaction.setMaxLifecycle(current, Lifecycle.State.STARTED);
+            transaction.add(getContainerId(), fragment, fragment.getClass().getName());
+        } else {
+            transaction.replace(getContainerId(), fragment, fragment.getClass().getName());
+        }
+        transaction.addToBackStack(fragment.getClass().getName());
+        int id = transaction.commit();
+        backStackIndex.push(id, fragment.getClass().getName());
+        Log.e(TAG, "replaceFragmentToStack: " + id + " : " + fragment.getClass().getName());
+    }
+
+    /**
+     * In the cache mode a replace would tear down the hidden cached fragments of the container,
+     * so the pending pops run first and the fragment they show is hidden instead.
+     *
+     * @return true if the pops ran, false out of the cache mode
+     */
+    private boolean canHideAfterPop() {
+        if (fragmentCacheSize == 0) {
+            return false;
+        }
+        getSupportFragmentManager().executePendingTransactions();
+        return true;
+    }
+
+    private void enqueuePopLast() {
+        backStackIndex.pop();
+        getSupportFragmentManager().popBackStack();
+    }
+
+    private void enqueueClear() {
+        backStackIndex.clear();
+        getSupportFragmentManager().popBackStack(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+    }
+
+    private void showCachedFragment(@NonNull Fragment fragment, @NonNull Anim anim) {
+        FragmentManager fm = getSupportFragmentManager();
+        String tag = fragment.getClass().getName();
+        Fragment current = getCurrentFragment();
+        Fragment target = fm.findFragmentByTag(tag);
+        Fragment stale = null;
+        if (target != null && target != fragment && !isSameArguments(target.getArguments(), fragment.getArguments())) {
+            // the cached instance shows other content, such as another item id
+            stale = target;
+            target = null;
+        }
+        if (target != null && target == current) {
+            cachedFragmentTags.put(tag, Boolean.TRUE);
+            return;
+        }
+        adoptCachedFragments(fm);
+        FragmentTransaction transaction = fm.beginTransaction();
+        setAnim(transaction, anim);
+        transaction.setReorderingAllowed(true);
+        if (stale != null) {
+            transaction.remove(stale);
+        }
+        if (current != null && current != stale) {
+            transaction.hide(current);
+            transaction.setMaxLifecycle(current, Lifecycle.State.STARTED);
+        }
+        if (target == null) {
+            target = fragment;
+            transaction.add(getContainerId(), target, tag);
+        } else {
+            transaction.show(target);
+        }
+        transaction.setMaxLifecycle(target, Lifecycle.State.RESUMED);
+        cachedFragmentTags.put(tag, Boolean.TRUE);
+        evictCachedFragments(fm, transaction, fragmentCacheSize, tag);
+        transaction.commit();
+    }
+
+    /**
+     * Track the fragments of the container not known yet, such as the ones restored after a
+     * configuration change, as the least recently shown.
+     */
+    private void adoptCachedFragments(@NonNull FragmentManager fm) {
+        List<String> adopted = null;
+        for (Fragment fragment : fm.getFragments()) {
+            String tag = fragment.getTag();
+            if (tag != null && fragment.getId() == getContainerId() && !cachedFragmentTags.containsKey(tag)) {
+                if (adopted == null) {
+                    adopted = new ArrayList<>();
+                }
+                adopted.add(tag);
+            }
+        }
+        if (adopted == null) {
+            return;
+        }
+        LinkedHashMap<String, Boolean> known = new LinkedHashMap<>(cachedFragmentTags);
+        cachedFragmentTags.clear();
+        for (String tag : adopted) {
+            cachedFragmentTags.put(tag, Boolean.TRUE);
+        }
+        cachedFragmentTags.putAll(known);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static boolean isSameArguments(@Nullable Bundle a, @Nullable Bundle b) {
+        if (a == null || b == null) {
+            return (a == null || a.isEmpty()) && (b == null || b.isEmpty());
+        }
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (String key : a.keySet()) {
+            if (!b.containsKey(key)) {
+                return false;
+            }
+            Object valueA = a.get(key);
+            Object valueB = b.get(key);
+            if (valueA instanceof Bundle && valueB instanceof Bundle) {
+                if (!isSameArguments((Bundle) valueA, (Bundle) valueB)) {
+                    return false;
+                }
+            } else if (!Objects.deepEquals(valueA, valueB)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void evictCachedFragments(@NonNull FragmentManager fm, @NonNull FragmentTransaction transaction,
+                                      int maxSize, @NonNull String shownTag) {
+        Iterator<String> iterator = cachedFragmentTags.keySet().iterator();
+        // the tags of the fragments removed by the back stack or a replace must not count
+        while (iterator.hasNext()) {
+            String tag = iterator.next();
+            Fragment fragment = fm.findFragmentByTag(tag);
+            if (!tag.equals(shownTag) && (fragment == null || !fragment.isAdded())) {
+                iterator.remove();
+            }
+        }
+        iterator = cachedFragmentTags.keySet().iterator();
+        // the fragment shown is not counted
+        while (cachedFragmentTags.size() > maxSize + 1 && iterator.hasNext()) {
+            String tag = iterator.next();
+            if (tag.equals(shownTag)) {
+                continue;
+            }
+            iterator.remove();
+            Fragment fragment = fm.findFragmentByTag(tag);
+            if (fragment != null) {
+                transaction.remove(fragment);
+            }
+        }
+    }
+
+    /**
+     * Remove the hidden cached fragments above maxSize. Nothing is removed while the back stack
+     * is not empty, popping it may show them again.
+     */
+    private void trimFragmentCache(int maxSize) {
+        FragmentManager fm = getSupportFragmentManager();
+        if (cachedFragmentTags.isEmpty() || getBackStackCount() > 0 || fm.isDestroyed()) {
+            return;
+        }
+        Fragment current = getCurrentFragment();
+        String shownTag = current != null && current.getTag() != null ? current.getTag() : "";
+        FragmentTransaction transaction = fm.beginTransaction();
+        evictCachedFragments(fm, transaction, maxSize, shownTag);
+        if (!transaction.isEmpty()) {
+            // a cache, losing its removal with the saved state is harmless
+            transaction.commitAllowingStateLoss();
         }
     }
 
@@ -263,35 +783,60 @@ public abstract class BaseActivity extends AppCompatActivity implements BaseFrag
         if (!view.isFocused()) {
             view.requestFocus();
         }
-        if (!isSoftInputVisible()) {
-            InputMethodManager imm = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
-            if (imm == null) {
-                return;
-            }
-            imm.showSoftInput(view, 0);
+        if (isSoftInputKnownAs(true)) {
+            skippedImeCallCount++;
+            return;
         }
+        InputMethodManager imm = getInputMethodManager();
+        if (imm == null) {
+            return;
+        }
+        onImeCall(true);
+        imm.showSoftInput(view, 0);
     }
 
     public void hideSoftInput() {
-        if (isSoftInputVisible()) {
-            View view = getWindow().getCurrentFocus();
-            if (view == null) {
-                view = getAndFocusFakeView();
-            }
-            hideSoftInput(view);
+        if (isSoftInputKnownAs(false)) {
+            skippedImeCallCount++;
+            return;
+        }
+        View view = getWindow().getCurrentFocus();
+        if (view == null) {
+            view = getAndFocusFakeView();
         }
+        hideSoftInput(view);
     }
 
     public void hideSoftInput(@NonNull final View view) {
-        InputMethodManager imm = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
+        InputMethodManager imm = getInputMethodManager();
         if (imm == null) {
             return;
         }
+        onImeCall(false);
         imm.hideSoftInputFromWindow(view.getWindowToken(), 0);
     }
 
+    /**
+     * @return binder calls made to the input method manager
+     */
+    public long getImeCallCount() {
+        return imeCallCount;
+    }
+
+    /**
+     * @return show / hide calls skipped because the soft input was already in that state
+     */
+    public long getSkippedImeCallCount() {
+        return skippedImeCallCount;
+    }
+
+    /**
+     * State of the last window insets, no layout query. Below API 30 outside
+     * {@code adjustResize}, where the insets do not carry the soft input, it is measured.
+     */
     public boolean isSoftInputVisible() {
-        return getSoftInputHeight() != -1;
+        softInputTracker.sync();
+        return softInputTracker.isVisible();
     }
 
     /**
@@ -299,31 +844,74 @@ public abstract class BaseActivity extends AppCompatActivity implements BaseFrag
      * keyboardHeight if key board is visible
      */
     public int getSoftInputHeight() {
-        final View contentView = findViewById(android.R.id.content);
-        Rect r = new Rect();
-        contentView.getWindowVisibleDisplayFrame(r);
-        final int screenHeight = contentView.getRootView().getHeight();
-        final int softInputHeight = screenHeight - r.bottom;
-        Log.e(TAG, "getKeyboardHeight: " + softInputHeight);
-        return softInputHeight > screenHeight * 0.15 ? softInputHeight : -1;
+        softInputTracker.sync();
+        return softInputTracker.getHeight();
+    }
+
+    /**
+     * Called on the main thread when the soft input is shown, hidden or resized.
+     */
+    public void addOnSoftInputChangedListener(@NonNull OnSoftInputChangedListener listener) {
+        softInputTracker.addListener(listener);
+    }
+
+    public void removeOnSoftInputChangedListener(@NonNull OnSoftInputChangedListener listener) {
+        softInputTracker.removeListener(listener);
+    }
+
+    /**
+     * A stale state must not keep the keyboard up, when the tracker does not see every change of
+     * the soft input it is measured once before deciding.
+     */
+    private boolean isSoftInputKnownAs(boolean visible) {
+        softInputTracker.sync();
+        return isSoftInputExpectedVisible() == visible;
+    }
+
+    /**
+     * The tracked state, or the one asked by a recent IME call the insets do not show yet.
+     */
+    private boolean isSoftInputExpectedVisible() {
+        boolean visible = softInputTracker.isVisible();
+        if (visible != isImeRequestedVisible && imeRequestedAt != 0
+                && SystemClock.uptimeMillis() - imeRequestedAt < IME_REQUEST_TIMEOUT_MS) {
+            return isImeRequestedVisible;
+        }
+        return visible;
+    }
+
+    private void onImeCall(boolean visible) {
+        imeCallCount++;
+        isImeRequestedVisible = visible;
+        imeRequestedAt = SystemClock.uptimeMillis();
+    }
+
+    @Nullable
+    private InputMethodManager getInputMethodManager() {
+        if (inputMethodManager == null) {
+            inputMethodManager = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
+        }
+        return inputMethodManager;
     }
 
     @NonNull
     private View getAndFocusFakeView() {
-        View decorView = getWindow().getDecorView();
-        View focusView = decorView.findViewWithTag("keyboardTagView");
-        View fakeView;
-        if (focusView == null) {
-            fakeView = new AppCompatEditText(getWindow().getContext()) {
-                @Override
-                public boolean onCheckIsTextEditor() {
-                    return false;// disable auto show key board when resume
-                }
-            };
-            fakeView.setTag("keyboardTagView");
-            ((ViewGroup) decorView).addView(fakeView, 0, 0);
-        } else {
-            fakeView = focusView;
+        View fakeView = fakeFocusView;
+        if (fakeView == null) {
+            View decorView = getWindow().getDecorView();
+            fakeView = decorView.findViewWithTag("keyboardTagView");
+            if (fakeView == null) {
+                fakeView = new AppCompatEditText(getWindow().getContext()) {
+                    @Override
+                    public boolean onCheckIsTextEditor() {
+                        return false;// disable auto show key board when resume
+                    }
+                };
+                fakeView.setTag("keyboardTagView");
+                ((ViewGroup) decorView).addView(fakeView, 0, 0);
+            }
+            // lives as long as the decor view of the window
+            fakeFocusView = fakeView;
         }
         fakeView.requestFocus();
         return fakeView;
@@ -337,6 +925,123 @@ public abstract class BaseActivity extends AppCompatActivity implements BaseFrag
         hideSoftInput();
     }
 
+    /**
+     * A batch of navigation calls, see {@link #beginNavigation()}. The calls behave like the ones of
+     * {@link BaseFragmentManager}, except that in the fragment cache mode a fragment shown after a
+     * pop of the same batch replaces the container instead of hiding the current one.
+     */
+    public final class Navigation {
+
+        private static final int CLEAR = 0;
+        private static final int POP = 1;
+        private static final int REPLACE = 2;
+        private static final int PUSH = 3;
+
+        private final List<Operation> operations = new ArrayList<>();
+        private boolean isCommitted;
+
+        private Navigation() {
+        }
+
+        @NonNull
+        public Navigation clearBackStack() {
+            return add(CLEAR, null, Anim.NONE);
+        }
+
+        @NonNull
+        public Navigation popLastFragment() {
+            return add(POP, null, Anim.NONE);
+        }
+
+        @NonNull
+        public Navigation replaceFragment(@NonNull Fragment fragment) {
+            return add(REPLACE, fragment, Anim.NONE);
+        }
+
+        @NonNull
+        public Navigation replaceFragment(@NonNull Fragment fragment, @NonNull Anim anim) {
+            return add(REPLACE, fragment, anim);
+        }
+
+        @NonNull
+        public Navigation replaceFragmentToStack(@NonNull Fragment fragment) {
+            return add(PUSH, fragment, Anim.NONE);
+        }
+
+        @NonNull
+        public Navigation replaceFragmentToStack(@NonNull Fragment fragment, @NonNull Anim anim) {
+            return add(PUSH, fragment, anim);
+        }
+
+        public void commit() {
+            if (isCommitted) {
+                throw new IllegalStateException("commit already called");
+            }
+            isCommitted = true;
+            long token = beginNavigationCall("commitNavigation", null);
+            try {
+                tryAutoHideSoftInput();
+                // the index counts the navigations enqueued and not executed yet
+                int depth = backStackIndex.size();
+                boolean hasPop = false;
+                for (Operation operation : operations) {
+                    switch (operation.type) {
+                        case CLEAR:
+                            if (depth > 0) {
+                                enqueueClear();
+                                depth = 0;
+                                hasPop = true;
+                            }
+                            break;
+                        case POP:
+                            if (depth > 0) {
+                                enqueuePopLast();
+                                depth--;
+                                hasPop = true;
+                            }
+                            break;
+                        case REPLACE:
+                            if (depth > 0) {
+                                enqueuePopLast();
+                                hasPop = true;
+                                commitToStack(operation.fragment, operation.anim, canHideAfterPop());
+                            } else {
+                                commitReplace(operation.fragment, operation.anim, !hasPop || canHideAfterPop());
+                            }
+                            break;
+                        case PUSH:
+                            commitToStack(operation.fragment, operation.anim, !hasPop || canHideAfterPop());
+                            depth++;
+                            break;
+                    }
+                }
+            } finally {
+                endNavigationCall(token, "commitNavigation");
+            }
+        }
+
+        @NonNull
+        private Navigation add(int type, @Nullable Fragment fragment, @NonNull Anim anim) {
+            if (isCommitted) {
+                throw new IllegalStateException("commit already called");
+            }
+            operations.add(new Operation(type, fragment, anim));
+            return this;
+        }
+    }
+
+    private static class Operation {
+        final int type;
+        final Fragment fragment;
+        final Anim anim;
+
+        Operation(int type, Fragment fragment, Anim anim) {
+            this.type = type;
+            this.fragment = fragment;
+            this.anim = anim;
+        }
+    }
+
     ///////////////////////////////////////////////////////////////////////////
     // INTERFACE
     ///////////////////////////////////////////////////////////////////////////
@@ -350,4 +1055,11 @@ public abstract class BaseActivity extends AppCompatActivity implements BaseFrag
         boolean onBackPressed();
     }
 
+    public interface OnSoftInputChangedListener {
+        /**
+         * @param height -1 if hidden
+         */
+        void onSoftInputChanged(boolean visible, int height);
+    }
+
 }
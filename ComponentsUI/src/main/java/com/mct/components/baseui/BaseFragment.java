@@ -1,12 +1,19 @@
 package com.mct.components.baseui;
 
 import android.content.Context;
+import android.os.Bundle;
+import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.Toast;
 
+import androidx.annotation.LayoutRes;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LifecycleRegistry;
 
 import com.mct.components.utils.ToastUtils;
 
@@ -14,6 +21,12 @@ public abstract class BaseFragment extends Fragment implements BaseView {
 
     private Toast mToast;
     private BaseFragmentManager mBaseFragmentManager;
+    private final VisibleLifecycleOwner mVisibleLifecycleOwner = new VisibleLifecycleOwner();
+    private boolean mIsResumed;
+    private boolean mIsFirstVisibleDispatched;
+    private boolean mIsViewReused;
+    private boolean mIsTrimmed;
+    private final LoadingController mLoadingController = new LoadingController(this::onShowLoading, this::onHideLoading);
 
     @Override
     public void onAttach(@NonNull Context context) {
@@ -23,12 +36,261 @@ public abstract class BaseFragment extends Fragment implements BaseView {
         }
     }
 
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mVisibleLifecycleOwner.registry.setCurrentState(Lifecycle.State.CREATED);
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        if (!isLazyInit()) {
+            dispatchFirstVisible();
+        }
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        mIsResumed = true;
+        updateVisibleState();
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        mIsResumed = false;
+        updateVisibleState();
+    }
+
+    @Override
+    public void onHiddenChanged(boolean hidden) {
+        super.onHiddenChanged(hidden);
+        updateVisibleState();
+    }
+
+    @Override
+    public void onDestroyView() {
+        mLoadingController.reset();
+        View view = getView();
+        super.onDestroyView();
+        // a hidden fragment losing its view is trimmed for memory, see BaseActivity#setBackStackBudget
+        RetainedViewCache retainedViewCache = getRetainedViewCache();
+        if (view != null && retainedViewCache != null && !isHidden() && !requireActivity().isFinishing()) {
+            retainedViewCache.put(this, view);
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        RetainedViewCache retainedViewCache = getRetainedViewCache();
+        if (retainedViewCache != null) {
+            retainedViewCache.remove(this);
+        }
+        if (mVisibleLifecycleOwner.registry.getCurrentState().isAtLeast(Lifecycle.State.CREATED)) {
+            mVisibleLifecycleOwner.registry.setCurrentState(Lifecycle.State.DESTROYED);
+        }
+        super.onDestroy();
+    }
+
+    /**
+     * Retained view mode: when this fragment goes to the back stack its view is kept detached,
+     * and popping back reattaches the same hierarchy instead of inflating it again, so the scroll
+     * positions and the adapters are as they were left. The views kept are bounded across the
+     * activity, see {@link BaseActivity#setRetainedViewLimit(int)}, over it a fragment inflates
+     * as usual. Off by default, only in a {@link BaseActivity}.
+     * <p>
+     * {@link #onViewCreated} is still called with the reused view, check {@link #isViewReused()}
+     * to skip the binding already done.
+     */
+    protected boolean isRetainView() {
+        return false;
+    }
+
+    /**
+     * @return true if the current view is the retained one, see {@link #isRetainView()}
+     */
+    protected boolean isViewReused() {
+        return mIsViewReused;
+    }
+
+    @Nullable
+    private RetainedViewCache getRetainedViewCache() {
+        if (isRetainView() && getActivity() instanceof BaseActivity) {
+            return ((BaseActivity) getActivity()).getRetainedViewCache();
+        }
+        return null;
+    }
+
+    /**
+     * Called when this fragment is deeper in the back stack than the budget of its activity, see
+     * {@link BaseActivity#setBackStackBudget(int)}. The instance stays until it is popped, release
+     * here what it holds for its content: the presenters, the loaded data, the bitmaps. Its view is
+     * already destroyed or about to be, and a retained view is dropped.
+     */
+    protected void onTrimmed() {
+    }
+
+    /**
+     * Called before the view of a {@link #onTrimmed() trimmed} fragment is created again, when it
+     * is shown back. Create the presenters and start the loads released by {@link #onTrimmed()},
+     * {@link #onFirstVisible()} is not called again.
+     */
+    protected void onRestored() {
+    }
+
+    /**
+     * @return true from {@link #onTrimmed()} until {@link #onRestored()}
+     */
+    public boolean isTrimmed() {
+        return mIsTrimmed;
+    }
+
+    void dispatchTrimmed() {
+        RetainedViewCache retainedViewCache = getRetainedViewCache();
+        if (retainedViewCache != null) {
+            retainedViewCache.remove(this);
+        }
+        mIsTrimmed = true;
+        onTrimmed();
+    }
+
+    /**
+     * Lazy mode: {@link #onFirstVisible()} waits until this fragment is resumed and not hidden,
+     * so the pages of a pager capped with {@code setMaxLifecycle(STARTED)} and the fragments kept
+     * hidden in the container load nothing until the user sees them. Off by default.
+     */
+    protected boolean isLazyInit() {
+        return false;
+    }
+
+    /**
+     * Called once per instance, the place to start the loads of the presenters. In lazy mode it
+     * is called the first time this fragment is visible, otherwise on its first start.
+     */
+    protected void onFirstVisible() {
+    }
+
+    /**
+     * @return true if resumed and not hidden
+     */
+    public boolean isVisibleToUser() {
+        return mIsResumed && !isHidden();
+    }
+
+    /**
+     * Lifecycle which is RESUMED while this fragment is {@link #isVisibleToUser() visible} and
+     * CREATED otherwise. A presenter bound to it with {@link BasePresenter#bindLifecycle} holds
+     * its deliveries while the fragment is hidden or paused, and is released with the fragment.
+     */
+    @NonNull
+    public LifecycleOwner getVisibleLifecycleOwner() {
+        return mVisibleLifecycleOwner;
+    }
+
+    private void updateVisibleState() {
+        LifecycleRegistry registry = mVisibleLifecycleOwner.registry;
+        if (!registry.getCurrentState().isAtLeast(Lifecycle.State.CREATED)) {
+            return;
+        }
+        boolean visible = isVisibleToUser();
+        // set before the hook so the loads it starts are not held
+        registry.setCurrentState(visible ? Lifecycle.State.RESUMED : Lifecycle.State.CREATED);
+        if (visible) {
+            dispatchFirstVisible();
+        }
+    }
+
+    private void dispatchFirstVisible() {
+        if (!mIsFirstVisibleDispatched) {
+            mIsFirstVisibleDispatched = true;
+            onFirstVisible();
+        }
+    }
+
+    /**
+     * Layout of this fragment, inflated by {@link #onCreateView} and prewarmable with
+     * {@link BaseActivity#prewarm(int)}. Override {@link #onCreateView} instead to keep 0.
+     */
+    @LayoutRes
+    protected int getLayoutId() {
+        return 0;
+    }
+
+    @Nullable
+    @Override
+    public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
+        mIsViewReused = false;
+        if (mIsTrimmed) {
+            mIsTrimmed = false;
+            onRestored();
+        }
+        RetainedViewCache retainedViewCache = getRetainedViewCache();
+        if (retainedViewCache != null) {
+            View view = retainedViewCache.take(this);
+            if (view != null) {
+                mIsViewReused = true;
+                return view;
+            }
+        }
+        int layoutId = getLayoutId();
+        if (layoutId == 0) {
+            return super.onCreateView(inflater, container, savedInstanceState);
+        }
+        if (getActivity() instanceof BaseActivity) {
+            View view = ((BaseActivity) getActivity()).takePrewarmedView(layoutId);
+            if (view != null) {
+                return view;
+            }
+        }
+        return inflater.inflate(layoutId, container, false);
+    }
+
+    /**
+     * Counted and debounced, see {@link #setLoadingTimings(long, long)}. Override
+     * {@link #onShowLoading()} to show the loading.
+     */
     @Override
     public void showLoading() {
+        mLoadingController.show();
     }
 
+    /**
+     * Counted and debounced, see {@link #setLoadingTimings(long, long)}. Override
+     * {@link #onHideLoading()} to hide the loading.
+     */
     @Override
     public void hideLoading() {
+        mLoadingController.hide();
+    }
+
+    /**
+     * Show the loading, called once per loading period.
+     */
+    protected void onShowLoading() {
+    }
+
+    /**
+     * Hide the loading, called once per loading period, and before the view is destroyed.
+     */
+    protected void onHideLoading() {
+    }
+
+    /**
+     * The nested {@link #showLoading()} / {@link #hideLoading()} calls are counted. The loading is
+     * shown once the first show waited showDelayMs without being hidden, and once shown it stays
+     * at least minShowMs, 500 ms each by default.
+     *
+     * @param showDelayMs 0 to show right away
+     * @param minShowMs   0 to hide right away
+     */
+    protected void setLoadingTimings(long showDelayMs, long minShowMs) {
+        mLoadingController.setTimings(showDelayMs, minShowMs);
+    }
+
+    public boolean isLoadingShown() {
+        return mLoadingController.isShown();
     }
 
     @Override
@@ -112,6 +374,15 @@ public abstract class BaseFragment extends Fragment implements BaseView {
         }
     }
 
+    /**
+     * See {@link BaseActivity#prewarm(int)}.
+     */
+    protected void prewarm(@LayoutRes int layoutId) {
+        if (getActivity() instanceof BaseActivity) {
+            ((BaseActivity) getActivity()).prewarm(layoutId);
+        }
+    }
+
     // block 1 time auto hide keyboard when fragment change
     protected void pendingDisableAutoHideSoftInput() {
         BaseActivity.sPendingDisableFragmentAutoHideSoftInput = true;
@@ -160,13 +431,25 @@ public abstract class BaseFragment extends Fragment implements BaseView {
 
     protected void showToast(String msg, int type, boolean showIcon) {
         if (getContext() != null) {
-            if (mToast != null) {
-                mToast.cancel();
-                mToast = null;
+            Toast previous = mToast;
+            if (previous != null) {
+                previous.cancel();
             }
-            mToast = ToastUtils.makeText(getContext(), Toast.LENGTH_SHORT, type, msg, showIcon);
+            // reuses the view of the previous toast if it already left the screen
+            mToast = ToastUtils.makeText(getContext(), Toast.LENGTH_SHORT, type, msg, showIcon, previous);
             mToast.show();
         }
     }
 
+    private static class VisibleLifecycleOwner implements LifecycleOwner {
+
+        final LifecycleRegistry registry = new LifecycleRegistry(this);
+
+        @NonNull
+        @Override
+        public Lifecycle getLifecycle() {
+            return registry;
+        }
+    }
+
 }
@@ -4,18 +4,54 @@ import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public abstract class BasePresenter {
 
     private static final String TAG = "MCT_B_Presenter";
 
+    // channel of the errors delivered through the main dispatcher, only the latest is kept while paused
+    private static final Object ERROR_CHANNEL = new Object();
+
+    static final TaskHandle CANCELLED = new TaskHandle() {
+        @Override
+        public boolean cancel() {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return true;
+        }
+
+        @Override
+        public boolean isDone() {
+            return true;
+        }
+    };
+
     private BaseView baseView;
     private Handler mainHandler;
-    private ExecutorService executorService;
+    private PresenterLane lane;
+    private MainDispatcher mainDispatcher;
+    private boolean isFrameAligned;
+    private int queueCapacity = Integer.MAX_VALUE;
+    private Overflow overflow = Overflow.BLOCK;
+    private LifecycleOwner lifecycleOwner;
+    private final LifecycleEventObserver lifecycleObserver = (source, event) -> onLifecycleChanged(source);
+    private PresenterMetrics.Recorder metrics;
+    // task groups, retried loads and streams, cancelled on release
+    private final Set<TaskHandle> trackedTasks = new HashSet<>();
     private boolean isRelease;
 
     public BasePresenter(BaseView baseView) {
@@ -29,40 +65,347 @@ public abstract class BasePresenter {
         return mainHandler;
     }
 
-    private ExecutorService getExecutorService() {
-        if (executorService == null) {
-            executorService = Executors.newSingleThreadExecutor();
+    @NonNull
+    PresenterMetrics.Recorder getMetrics() {
+        PresenterMetrics.Recorder recorder = metrics;
+        if (recorder == null) {
+            metrics = recorder = PresenterMetrics.recorderOf(getClass());
+        }
+        return recorder;
+    }
+
+    private synchronized MainDispatcher getMainDispatcher() {
+        if (mainDispatcher == null) {
+            mainDispatcher = new MainDispatcher(this);
+            mainDispatcher.setFrameAligned(isFrameAligned);
+        }
+        return mainDispatcher;
+    }
+
+    /**
+     * Serial lane of this presenter on the shared {@link PresenterExecutor} pool.
+     */
+    private synchronized PresenterLane getLane() {
+        if (lane == null) {
+            lane = PresenterExecutor.newLane(this);
+            lane.setCapacity(queueCapacity, overflow);
+        }
+        return lane;
+    }
+
+    /**
+     * Bind the deliveries of this presenter to a lifecycle, such as a {@link BaseFragment} or a
+     * {@link BaseOverlayLifecycle}. Below STARTED the main thread callbacks and errors wait,
+     * keeping only the latest one per key (see {@link #postMain(Object, Runnable)}), and they are
+     * delivered once started again. On DESTROYED the presenter releases itself.
+     * {@link #postMain(Runnable)} is still posted like with {@link Handler#post(Runnable)}, the
+     * binding only holds the deliveries, conflating the keyed ones.
+     */
+    @MainThread
+    public void bindLifecycle(@NonNull LifecycleOwner owner) {
+        if (!canExec() || owner == lifecycleOwner) return;
+        unbindLifecycle();
+        lifecycleOwner = owner;
+        owner.getLifecycle().addObserver(lifecycleObserver);
+    }
+
+    @MainThread
+    private void unbindLifecycle() {
+        if (lifecycleOwner != null) {
+            lifecycleOwner.getLifecycle().removeObserver(lifecycleObserver);
+            lifecycleOwner = null;
+        }
+    }
+
+    private void onLifecycleChanged(@NonNull LifecycleOwner source) {
+        Lifecycle.State state = source.getLifecycle().getCurrentState();
+        if (state == Lifecycle.State.DESTROYED) {
+            release();
+        } else {
+            getMainDispatcher().setPaused(!state.isAtLeast(Lifecycle.State.STARTED));
+        }
+    }
+
+    /**
+     * Whether a callback posted on the main thread with nothing waiting may run right away, only
+     * in the frame aligned mode which opts in. Otherwise {@link #postMain(Runnable)} keeps the
+     * looper semantic of {@link Handler#post(Runnable)}, bound to a lifecycle or not.
+     */
+    private boolean canRunNow() {
+        return isFrameAligned;
+    }
+
+    /**
+     * Bound the number of tasks waiting in the background lane of this presenter, the running task
+     * is not counted. The lane is unbounded by default.
+     *
+     * @param capacity max waiting tasks, > 0
+     * @param overflow what happens to a submission when the lane is full
+     */
+    protected synchronized void setQueueCapacity(int capacity, @NonNull Overflow overflow) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        this.queueCapacity = capacity;
+        this.overflow = overflow;
+        if (lane != null) {
+            lane.setCapacity(capacity, overflow);
         }
-        return executorService;
+    }
+
+    /**
+     * @return tasks dropped by {@link Overflow#DROP_OLDEST} or {@link Overflow#DROP_NEWEST}
+     */
+    public long getDroppedTaskCount() {
+        PresenterLane l = lane;
+        return l == null ? 0 : l.getDroppedCount();
+    }
+
+    /**
+     * @return tasks refused by {@link Overflow#REJECT}, or by {@link Overflow#BLOCK} where it can
+     * not block
+     */
+    public long getRejectedTaskCount() {
+        PresenterLane l = lane;
+        return l == null ? 0 : l.getRejectedCount();
+    }
+
+    /**
+     * Called on the submitting thread with a task refused by a full lane under {@link Overflow#REJECT},
+     * or under {@link Overflow#BLOCK} on a thread that can not block.
+     */
+    protected void onTaskRejected(@NonNull Runnable r) {
+        Log.w(TAG, "Task rejected, the queue is full");
     }
 
     protected void exec(Runnable r) {
-        if (canExec()) getExecutorService().execute(handleRunnable(r));
+        exec(r, Priority.USER_VISIBLE);
+    }
+
+    /**
+     * Run a task on the background lane of this presenter. Tasks of the same priority run in
+     * submission order, a more urgent task runs before the waiting less urgent ones.
+     */
+    protected void exec(@NonNull Runnable r, @NonNull Priority priority) {
+        if (canExec()) getLane().execute(r, priority.ordinal());
+    }
+
+    /**
+     * Run a task on the background lane of this presenter.
+     * <p>
+     * While a task of the same key is still waiting, submitting again only replaces its work,
+     * so the latest submission runs once at the position of the first one.
+     *
+     * @param key the coalescing key, null to always queue
+     * @param r   the work
+     * @return handle to cancel the task
+     */
+    @NonNull
+    protected TaskHandle exec(@Nullable Object key, @NonNull Runnable r) {
+        return exec(key, r, Priority.USER_VISIBLE);
+    }
+
+    /**
+     * Same as {@link #exec(Object, Runnable)} with a priority. A coalesced task keeps the
+     * most urgent of its priorities.
+     */
+    @NonNull
+    protected TaskHandle exec(@Nullable Object key, @NonNull Runnable r, @NonNull Priority priority) {
+        if (!canExec()) return CANCELLED;
+        return getLane().submit(key, r, priority.ordinal());
+    }
+
+    /**
+     * Cancel the waiting and the running task submitted with this key.
+     *
+     * @return true if a task was cancelled
+     */
+    protected boolean cancel(@NonNull Object key) {
+        return lane != null && lane.cancel(key);
+    }
+
+    /**
+     * Run independent loads in parallel and deliver their results together on the main thread,
+     * in the order of the loaders. The first failure cancels the other loads and is routed to
+     * {@link BaseView#onFalse(Throwable)}. Releasing the presenter cancels the whole group.
+     *
+     * @return handle to cancel the whole group
+     */
+    @NonNull
+    protected <T> TaskHandle execAll(@NonNull List<? extends Loader<? extends T>> loaders,
+                                     @NonNull Callback<List<T>> callback) {
+        if (!canExec()) return CANCELLED;
+        PresenterTaskGroup<T> group = new PresenterTaskGroup<>(this, loaders, callback);
+        synchronized (trackedTasks) {
+            trackedTasks.add(group);
+        }
+        group.start(PresenterExecutor.getPool());
+        return group;
+    }
+
+    /**
+     * Same as {@link #exec(Loader, RetryPolicy, long, Callback)} without a deadline.
+     */
+    @NonNull
+    protected <T> TaskHandle exec(@NonNull Loader<T> loader, @NonNull RetryPolicy policy, @NonNull Callback<T> callback) {
+        return exec(loader, policy, 0, callback);
+    }
+
+    /**
+     * Run a load on the background lane of this presenter, retrying its failures as told by the
+     * policy, and deliver the value on the main thread.
+     * <p>
+     * The waits between attempts are scheduled, they do not hold the lane. Past the deadline the
+     * running attempt is interrupted and a {@link java.util.concurrent.TimeoutException} is routed
+     * to {@link BaseView#onFalse(Throwable)}, as is the last failure once no retry is left.
+     *
+     * @param deadlineMs time allowed for all the attempts and waits, 0 for none
+     * @return handle to cancel the load and its pending retry
+     */
+    @NonNull
+    protected <T> TaskHandle exec(@NonNull Loader<T> loader, @NonNull RetryPolicy policy, long deadlineMs,
+                                  @NonNull Callback<T> callback) {
+        if (!canExec()) return CANCELLED;
+        PresenterRetryTask<T> task = new PresenterRetryTask<>(this, loader, policy, deadlineMs,
+                Priority.USER_VISIBLE, callback);
+        synchronized (trackedTasks) {
+            trackedTasks.add(task);
+        }
+        task.start();
+        return task;
+    }
+
+    /**
+     * Run a load on the background lane of this presenter that hands out its result in chunks,
+     * so the view shows the first content before the whole load is done.
+     * <p>
+     * The chunks emitted during a frame are delivered together on the main thread, at most once
+     * per frame, then {@link StreamCallback#onComplete()} once the load returns. The view shows its
+     * loading UI from now until the first chunk, the completion or a failure, which is routed to
+     * {@link BaseView#onFalse(Throwable)}.
+     *
+     * @return handle to cancel the load, the chunks not delivered yet are dropped
+     */
+    @NonNull
+    protected <C> TaskHandle stream(@NonNull StreamLoader<C> loader, @NonNull StreamCallback<C> callback) {
+        return stream(loader, callback, Priority.USER_VISIBLE);
+    }
+
+    /**
+     * @see #stream(StreamLoader, StreamCallback)
+     */
+    @NonNull
+    protected <C> TaskHandle stream(@NonNull StreamLoader<C> loader, @NonNull StreamCallback<C> callback,
+                                    @NonNull Priority priority) {
+        if (!canExec()) return CANCELLED;
+        PresenterStream<C> stream = new PresenterStream<>(this, loader, callback);
+        synchronized (trackedTasks) {
+            trackedTasks.add(stream);
+        }
+        stream.start(priority);
+        return stream;
+    }
+
+    void onTaskFinished(@NonNull TaskHandle task) {
+        synchronized (trackedTasks) {
+            trackedTasks.remove(task);
+        }
+    }
+
+    /**
+     * Load a value through the shared {@link PresenterCache} and deliver it on the main thread.
+     * <p>
+     * A fresh cached value is delivered right away. A stale one is delivered right away too,
+     * then the callback is called again with the refreshed value. Concurrent loads of one key,
+     * from any presenter, share a single run of the first loader. A failure is routed to
+     * {@link BaseView#onFalse(Throwable)}, except for a callback that already got a stale value.
+     *
+     * @param key    cache key, shared by every presenter
+     * @param loader computes the value on a background thread
+     */
+    protected <T> void load(@NonNull Object key, @NonNull Loader<T> loader, @NonNull Callback<T> callback) {
+        load(key, PresenterCache.DEFAULT_TTL_MS, loader, callback);
     }
 
+    /**
+     * @param ttlMs time a computed value stays fresh
+     * @see #load(Object, Loader, Callback)
+     */
+    protected <T> void load(@NonNull Object key, long ttlMs, @NonNull Loader<T> loader, @NonNull Callback<T> callback) {
+        if (canExec()) PresenterCache.load(this, key, ttlMs, loader, callback);
+    }
+
+    /**
+     * Deliver a callback on the main thread.
+     * In frame aligned mode the callbacks are batched, see {@link #setFrameAlignedDelivery(boolean)}.
+     */
     protected void postMain(Runnable r) {
-        if (canExec()) getMainHandler().post(handleRunnable(r));
+        if (canExec()) getMainDispatcher().dispatch(null, r, canRunNow());
+    }
+
+    /**
+     * Deliver a callback on the main thread, conflated by key: while a callback of the same key
+     * is still waiting, it is replaced by this one so only the latest value is delivered.
+     * Called on the main thread with nothing waiting, the callback runs right away.
+     */
+    protected void postMain(@NonNull Object key, @NonNull Runnable r) {
+        if (canExec()) getMainDispatcher().dispatch(key, r);
     }
 
     protected void postMain(Runnable r, long delay) {
-        if (canExec()) getMainHandler().postDelayed(handleRunnable(r), delay);
+        if (!canExec()) return;
+        getMainHandler().postDelayed(() -> {
+            if (canExec()) getMainDispatcher().dispatch(null, r, canRunNow());
+        }, delay);
+    }
+
+    /**
+     * In frame aligned mode {@link #postMain(Runnable)} callbacks are queued and run together
+     * once per vsync, so a presenter streaming results invalidates its view once per frame.
+     * Called on the main thread with nothing waiting, a callback runs right away.
+     * Delayed callbacks are not batched.
+     */
+    protected void setFrameAlignedDelivery(boolean enabled) {
+        isFrameAligned = enabled;
+        if (mainDispatcher != null) {
+            mainDispatcher.setFrameAligned(enabled);
+        }
     }
 
     protected BaseView getBaseView() {
         return baseView;
     }
 
-    @NonNull
-    private Runnable handleRunnable(Runnable r) {
-        return () -> {
-            try {
-                r.run();
-            } catch (Throwable t) {
-                getMainHandler().post(() -> {
-                    if (baseView != null) baseView.onFalse(t);
-                });
-            }
-        };
+    /**
+     * Run a callback, routing its failure to {@link BaseView#onFalse(Throwable)}.
+     * On the main thread the call is timed by the {@link JankWatchdog}.
+     */
+    void runGuarded(@NonNull Runnable r) {
+        long token = JankWatchdog.begin();
+        try {
+            r.run();
+        } catch (Throwable t) {
+            dispatchError(t);
+        } finally {
+            JankWatchdog.end(token, getClass(), "postMain");
+        }
+    }
+
+    void dispatchError(Throwable t) {
+        if (isRelease) return;
+        // only the errors routed to onFalse
+        if (PresenterMetrics.isEnabled()) {
+            getMetrics().onError();
+        }
+        if (lifecycleOwner != null) {
+            getMainDispatcher().dispatchError(ERROR_CHANNEL, t, true);
+        } else {
+            getMainDispatcher().dispatchError(null, t, false);
+        }
+    }
+
+    void deliverError(@NonNull Throwable t) {
+        if (baseView != null) baseView.onFalse(t);
     }
 
     private boolean canExec() {
@@ -78,12 +421,116 @@ public abstract class BasePresenter {
     }
 
     public void release() {
-        if (executorService != null) {
-            executorService.shutdownNow();
-            executorService = null;
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            unbindLifecycle();
+        } else if (lifecycleOwner != null) {
+            getMainHandler().post(this::unbindLifecycle);
+        }
+        if (lane != null) {
+            lane.cancelAll();
+            lane = null;
+        }
+        List<TaskHandle> tasks;
+        synchronized (trackedTasks) {
+            tasks = new ArrayList<>(trackedTasks);
+        }
+        for (TaskHandle task : tasks) {
+            task.cancel();
+        }
+        if (mainDispatcher != null) {
+            mainDispatcher.release();
+            mainDispatcher = null;
         }
         mainHandler = null;
         baseView = null;
         isRelease = true;
     }
+
+    /**
+     * Scheduling class of a background task, from the most to the least urgent.
+     * A waiting task is raised one class every 500 ms so it can not starve.
+     */
+    public enum Priority {
+        IMMEDIATE, USER_VISIBLE, BACKGROUND, IDLE
+    }
+
+    /**
+     * Policy of a full background lane, see {@link #setQueueCapacity(int, Overflow)}.
+     */
+    public enum Overflow {
+        /**
+         * Cancel the task waiting the longest to make room.
+         */
+        DROP_OLDEST,
+        /**
+         * Drop the new task.
+         */
+        DROP_NEWEST,
+        /**
+         * Block the submitting thread until there is room. On the main thread and inside a task of
+         * a presenter, where waiting could never end, the task is rejected like {@link #REJECT}.
+         */
+        BLOCK,
+        /**
+         * Drop the new task and hand it to {@link #onTaskRejected(Runnable)}.
+         */
+        REJECT
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // INTERFACE
+    ///////////////////////////////////////////////////////////////////////////
+
+    public interface Loader<T> {
+        T load() throws Exception;
+    }
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    public interface StreamLoader<C> {
+        /**
+         * Called on a background thread, emit the chunks as they are ready.
+         */
+        void load(@NonNull Emitter<C> emitter) throws Exception;
+    }
+
+    public interface Emitter<C> {
+        void emit(@NonNull C chunk);
+
+        /**
+         * @return true once the stream is cancelled, a long load should stop
+         */
+        boolean isCancelled();
+    }
+
+    public interface StreamCallback<C> {
+        /**
+         * Called on the main thread with the chunks emitted since the previous call, in order.
+         */
+        void onChunks(@NonNull List<C> chunks);
+
+        /**
+         * Called on the main thread after the last chunk, not called on failure or cancel.
+         */
+        void onComplete();
+    }
+
+    public interface TaskHandle {
+        /**
+         * Cancel the task. A waiting task is dropped, a running task is interrupted
+         * and its failure is not reported to {@link BaseView#onFalse(Throwable)}.
+         *
+         * @return false if the task already finished or was cancelled
+         */
+        boolean cancel();
+
+        boolean isCancelled();
+
+        /**
+         * @return true if the task finished or was cancelled
+         */
+        boolean isDone();
+    }
 }
@@ -0,0 +1,128 @@
+package com.mct.components.baseui;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import androidx.annotation.LayoutRes;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Inflates the views of the fragments of a {@link BaseActivity} on the shared
+ * {@link PresenterExecutor} pool ahead of the navigation, see {@link BaseActivity#prewarm(int)}.
+ * <p>
+ * Like {@code AsyncLayoutInflater} the layout is inflated without the factory of the activity:
+ * the AppCompat factory and its view inflater are main thread objects. So the AppCompat widgets
+ * are not substituted, a {@code TextView} stays a platform one. A layout that can not be inflated
+ * off the main thread is simply left to the normal inflation. No live view is touched off the main
+ * thread either, the root layout params come from a detached parent of the worker.
+ */
+final class FragmentPrewarmer {
+
+    private static final String TAG = "MCT_Prewarmer";
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // by layout id, main thread only
+    private final SparseArray<View> views = new SparseArray<>();
+    private final SparseArray<Boolean> pending = new SparseArray<>();
+    private long hitCount;
+    private long missCount;
+    private boolean isReleased;
+
+    @MainThread
+    void prewarm(@NonNull Context context, @LayoutRes int layoutId) {
+        if (isReleased || views.get(layoutId) != null || pending.get(layoutId) != null) {
+            return;
+        }
+        pending.put(layoutId, Boolean.TRUE);
+        LayoutInflater inflater = new BasicInflater(context);
+        // only reads the layout params of the root, the container converts them when adding it
+        FrameLayout parent = new FrameLayout(context);
+        PresenterExecutor.getPool().execute(() -> {
+            View view = null;
+            try {
+                view = inflater.inflate(layoutId, parent, false);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Failed to prewarm layout " + layoutId + ", it is inflated on the main thread", e);
+            }
+            View result = view;
+            mainHandler.post(() -> {
+                pending.remove(layoutId);
+                if (!isReleased && result != null) {
+                    views.put(layoutId, result);
+                }
+            });
+        });
+    }
+
+    /**
+     * @return the prewarmed view of this layout, null on a miss
+     */
+    @Nullable
+    @MainThread
+    View take(@LayoutRes int layoutId) {
+        View view = views.get(layoutId);
+        if (view != null) {
+            views.remove(layoutId);
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return view;
+    }
+
+    long getHitCount() {
+        return hitCount;
+    }
+
+    long getMissCount() {
+        return missCount;
+    }
+
+    @MainThread
+    void release() {
+        isReleased = true;
+        views.clear();
+        pending.clear();
+    }
+
+    /**
+     * Inflater without factory, like the one of {@code AsyncLayoutInflater}.
+     */
+    private static class BasicInflater extends LayoutInflater {
+
+        private static final String[] sClassPrefixList = {"android.widget.", "android.webkit.", "android.app."};
+
+        BasicInflater(Context context) {
+            super(context);
+        }
+
+        @Override
+        public LayoutInflater cloneInContext(Context newContext) {
+            return new BasicInflater(newContext);
+        }
+
+        @Override
+        protected View onCreateView(String name, AttributeSet attrs) throws ClassNotFoundException {
+            for (String prefix : sClassPrefixList) {
+                try {
+                    View view = createView(name, prefix, attrs);
+                    if (view != null) {
+                        return view;
+                    }
+                } catch (ClassNotFoundException ignored) {
+                    // try the next prefix
+                }
+            }
+            return super.onCreateView(name, attrs);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.mct.components.baseui;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Main thread watchdog for the callbacks of {@link BasePresenter} and the navigation calls of
+ * {@link BaseActivity}.
+ * <p>
+ * A watched call running longer than the threshold is reported to the {@link Listener listeners}
+ * (or logged when there is none) with its originating class and the main thread stack, captured
+ * from a background thread while the call was still running.
+ * <p>
+ * Off by default. When off, or when a call is not sampled, the cost is a volatile read and a
+ * counter. Only the outermost watched call of the main thread is timed, nested ones are part of it.
+ */
+public final class JankWatchdog {
+
+    private static final String TAG = "MCT_JankWatchdog";
+
+    public static final long DEFAULT_THRESHOLD_MS = 32;
+
+    /**
+     * Returned by {@link #begin()} when the call is not watched.
+     */
+    static final long NOT_WATCHED = -1;
+
+    private static volatile boolean sEnabled;
+    private static volatile long sThresholdMs = DEFAULT_THRESHOLD_MS;
+    private static volatile int sSampleInterval = 1;
+    private static final CopyOnWriteArrayList<Listener> sListeners = new CopyOnWriteArrayList<>();
+
+    private static Handler sWatchHandler;
+    // main thread only
+    private static int sDepth;
+    private static int sSampleCounter;
+    // written by the watch thread, read on the main thread after the call
+    private static volatile StackTraceElement[] sCapturedStack;
+    private static volatile long sArmedToken;
+    private static long sToken;
+
+    private static final Runnable sStackSampler = new Runnable() {
+        @Override
+        public void run() {
+            long token = sArmedToken;
+            StackTraceElement[] stack = Looper.getMainLooper().getThread().getStackTrace();
+            // only keep it if the same call is still running
+            if (token == sArmedToken) {
+                sCapturedStack = stack;
+            }
+        }
+    };
+
+    private JankWatchdog() {
+        throw new UnsupportedOperationException("u can't instantiate me...");
+    }
+
+    public static synchronized void setEnabled(boolean enabled) {
+        if (enabled && sWatchHandler == null) {
+            HandlerThread thread = new HandlerThread("MCT_JankWatchdog", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            sWatchHandler = new Handler(thread.getLooper());
+        }
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * @param thresholdMs a watched call running at least this long is reported, 16 or 32 ms are common
+     */
+    public static void setThresholdMs(long thresholdMs) {
+        if (thresholdMs <= 0) {
+            throw new IllegalArgumentException("thresholdMs <= 0");
+        }
+        sThresholdMs = thresholdMs;
+    }
+
+    public static long getThresholdMs() {
+        return sThresholdMs;
+    }
+
+    /**
+     * @param sampleRate part of the calls to watch, in (0, 1]. 0.1 watches one call out of ten.
+     */
+    public static void setSampleRate(float sampleRate) {
+        if (sampleRate <= 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate must be in (0, 1]");
+        }
+        sSampleInterval = Math.max(1, Math.round(1 / sampleRate));
+    }
+
+    public static void addListener(@NonNull Listener listener) {
+        sListeners.addIfAbsent(listener);
+    }
+
+    public static void removeListener(@NonNull Listener listener) {
+        sListeners.remove(listener);
+    }
+
+    /**
+     * Start watching a call.
+     *
+     * @return token for {@link #end(long, Class, String)}, {@link #NOT_WATCHED} if not watched
+     */
+    static long begin() {
+        if (!sEnabled || Looper.myLooper() != Looper.getMainLooper()) {
+            return NOT_WATCHED;
+        }
+        if (sDepth > 0) {
+            sDepth++;
+            return NOT_WATCHED;
+        }
+        if (++sSampleCounter < sSampleInterval) {
+            return NOT_WATCHED;
+        }
+        sSampleCounter = 0;
+        sDepth = 1;
+        sCapturedStack = null;
+        sArmedToken = ++sToken;
+        Handler handler = sWatchHandler;
+        if (handler != null) {
+            handler.postDelayed(sStackSampler, sThresholdMs);
+        }
+        return SystemClock.uptimeMillis();
+    }
+
+    /**
+     * Stop watching a call and report it if it was too long.
+     *
+     * @param startedAt token from {@link #begin()}
+     * @param origin    class that issued the call
+     * @param action    what the call did
+     */
+    static void end(long startedAt, @NonNull Class<?> origin, @NonNull String action) {
+        if (startedAt == NOT_WATCHED) {
+            if (sDepth > 0 && Looper.myLooper() == Looper.getMainLooper()) {
+                sDepth--;
+            }
+            return;
+        }
+        sDepth = 0;
+        long durationMs = SystemClock.uptimeMillis() - startedAt;
+        sArmedToken = 0;
+        Handler handler = sWatchHandler;
+        if (handler != null) {
+            handler.removeCallbacks(sStackSampler);
+        }
+        long threshold = sThresholdMs;
+        if (durationMs < threshold) {
+            return;
+        }
+        Report report = new Report(origin, action, durationMs, threshold, sCapturedStack);
+        sCapturedStack = null;
+        if (sListeners.isEmpty()) {
+            Log.w(TAG, report.toString());
+            return;
+        }
+        for (Listener listener : sListeners) {
+            listener.onJank(report);
+        }
+    }
+
+    public static final class Report {
+
+        @NonNull
+        public final Class<?> origin;
+        @NonNull
+        public final String action;
+        public final long durationMs;
+        public final long thresholdMs;
+        /**
+         * Main thread stack while the call was running, null if it ended before the sample.
+         */
+        @Nullable
+        public final StackTraceElement[] stack;
+
+        Report(@NonNull Class<?> origin, @NonNull String action, long durationMs, long thresholdMs,
+               @Nullable StackTraceElement[] stack) {
+            this.origin = origin;
+            this.action = action;
+            this.durationMs = durationMs;
+            this.thresholdMs = thresholdMs;
+            this.stack = stack;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder()
+                    .append(origin.getName()).append('#').append(action)
+                    .append(" took ").append(durationMs).append("ms (threshold ")
+                    .append(thresholdMs).append("ms)");
+            if (stack != null) {
+                for (StackTraceElement element : stack) {
+                    sb.append("\n\tat ").append(element);
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // INTERFACE
+    ///////////////////////////////////////////////////////////////////////////
+
+    public interface Listener {
+        /**
+         * Called on the main thread right after the slow call.
+         */
+        void onJank(@NonNull Report report);
+    }
+}
@@ -0,0 +1,124 @@
+package com.mct.components.baseui;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+/**
+ * Debounced loading state of a {@link BaseView}, like {@code ContentLoadingProgressBar}.
+ * <p>
+ * The show / hide calls are counted, the loading is shown once the first show has waited the
+ * show delay without the count falling back to 0, and once shown it stays at least the min
+ * display time. Work finishing within the delay shows nothing, nested calls change nothing:
+ * the view gets one show and one hide per loading period. Calls from other threads are posted
+ * to the main thread.
+ */
+final class LoadingController {
+
+    static final long DEFAULT_SHOW_DELAY_MS = 500;
+    static final long DEFAULT_MIN_SHOW_MS = 500;
+
+    private static final int HIDDEN = 0;
+    private static final int PENDING_SHOW = 1;
+    private static final int SHOWN = 2;
+    private static final int PENDING_HIDE = 3;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable onShow;
+    private final Runnable onHide;
+    private final Runnable showRunnable = this::showNow;
+    private final Runnable hideRunnable = this::hideNow;
+    private final Runnable postedShow = this::show;
+    private final Runnable postedHide = this::hide;
+    private long showDelayMs = DEFAULT_SHOW_DELAY_MS;
+    private long minShowMs = DEFAULT_MIN_SHOW_MS;
+    // main thread only
+    private int count;
+    private int state = HIDDEN;
+    private long shownAt;
+
+    LoadingController(@NonNull Runnable onShow, @NonNull Runnable onHide) {
+        this.onShow = onShow;
+        this.onHide = onHide;
+    }
+
+    void setTimings(long showDelayMs, long minShowMs) {
+        this.showDelayMs = showDelayMs;
+        this.minShowMs = minShowMs;
+    }
+
+    boolean isShown() {
+        return state == SHOWN || state == PENDING_HIDE;
+    }
+
+    void show() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(postedShow);
+            return;
+        }
+        if (++count > 1) {
+            return;
+        }
+        if (state == PENDING_HIDE) {
+            mainHandler.removeCallbacks(hideRunnable);
+            state = SHOWN;
+        } else if (state == HIDDEN) {
+            if (showDelayMs <= 0) {
+                showNow();
+            } else {
+                state = PENDING_SHOW;
+                mainHandler.postDelayed(showRunnable, showDelayMs);
+            }
+        }
+    }
+
+    void hide() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(postedHide);
+            return;
+        }
+        if (count == 0 || --count > 0) {
+            return;
+        }
+        if (state == PENDING_SHOW) {
+            mainHandler.removeCallbacks(showRunnable);
+            state = HIDDEN;
+        } else if (state == SHOWN) {
+            long remaining = minShowMs - (SystemClock.uptimeMillis() - shownAt);
+            if (remaining <= 0) {
+                hideNow();
+            } else {
+                state = PENDING_HIDE;
+                mainHandler.postDelayed(hideRunnable, remaining);
+            }
+        }
+    }
+
+    /**
+     * Drop the count and hide a shown loading right away, before its view is destroyed.
+     */
+    @MainThread
+    void reset() {
+        count = 0;
+        mainHandler.removeCallbacks(showRunnable);
+        mainHandler.removeCallbacks(hideRunnable);
+        if (isShown()) {
+            hideNow();
+        }
+        state = HIDDEN;
+    }
+
+    private void showNow() {
+        state = SHOWN;
+        shownAt = SystemClock.uptimeMillis();
+        onShow.run();
+    }
+
+    private void hideNow() {
+        state = HIDDEN;
+        onHide.run();
+    }
+}
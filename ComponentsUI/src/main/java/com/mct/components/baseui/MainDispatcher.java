@@ -0,0 +1,289 @@
+package com.mct.components.baseui;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Main thread delivery queue of a {@link BasePresenter}.
+ * <p>
+ * Callbacks are queued and run together in one pass, either on the next vsync through
+ * {@link Choreographer} (frame aligned) or on the next main looper message.
+ * A keyed callback is conflated: while one of the same key is waiting, only the latest
+ * is kept, at the position of the first.
+ * <p>
+ * While paused nothing is delivered, the callbacks wait (conflated by key) until it resumes.
+ * <p>
+ * Queue entries are linked through themselves and recycled, so a steady flow of callbacks
+ * allocates nothing here.
+ */
+final class MainDispatcher implements Choreographer.FrameCallback, Runnable {
+
+    private static final int MAX_POOL_SIZE = 32;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final BasePresenter owner;
+    private final Map<Object, Entry> pendingByKey = new HashMap<>();
+    private final Runnable scheduler = this::schedule;
+    private Entry head;
+    private Entry tail;
+    private int size;
+    private Entry pool;
+    private int poolSize;
+    private boolean frameAligned;
+    private boolean isPaused;
+    private boolean isScheduled;
+    private boolean isReleased;
+    // main thread only, a callback posting from inside a delivery must not run nested
+    private boolean isDelivering;
+
+    MainDispatcher(@NonNull BasePresenter owner) {
+        this.owner = owner;
+    }
+
+    void setFrameAligned(boolean frameAligned) {
+        synchronized (this) {
+            this.frameAligned = frameAligned;
+        }
+    }
+
+    void setPaused(boolean paused) {
+        boolean resume;
+        synchronized (this) {
+            if (isPaused == paused) {
+                return;
+            }
+            isPaused = paused;
+            resume = !paused && !isScheduled && size > 0;
+            if (resume) {
+                isScheduled = true;
+            }
+        }
+        if (resume) {
+            if (isMainThread()) {
+                schedule();
+            } else {
+                mainHandler.post(scheduler);
+            }
+        }
+    }
+
+    /**
+     * Queue a callback. Called on the main thread with nothing waiting, the callback runs now.
+     * A failure of the callback is routed to {@link BasePresenter#dispatchError(Throwable)}.
+     */
+    void dispatch(@Nullable Object key, @NonNull Runnable r) {
+        enqueue(key, r, null, true);
+    }
+
+    /**
+     * @param runNow false to always wait for the next pass, even on the main thread with nothing waiting
+     */
+    void dispatch(@Nullable Object key, @NonNull Runnable r, boolean runNow) {
+        enqueue(key, r, null, runNow);
+    }
+
+    /**
+     * Queue the delivery of an error to {@link BasePresenter#deliverError(Throwable)}.
+     * A failure of the delivery itself propagates.
+     */
+    void dispatchError(@Nullable Object key, @NonNull Throwable t, boolean runNow) {
+        enqueue(key, null, t, runNow);
+    }
+
+    private void enqueue(@Nullable Object key, @Nullable Runnable r, @Nullable Throwable error, boolean runNow) {
+        synchronized (this) {
+            if (isReleased) {
+                return;
+            }
+            if (key != null) {
+                Entry pending = pendingByKey.get(key);
+                if (pending != null) {
+                    pending.runnable = r;
+                    pending.error = error;
+                    return;
+                }
+            }
+            runNow = runNow && size == 0 && !isScheduled && !isDelivering && !isPaused && isMainThread();
+            if (!runNow) {
+                Entry entry = obtain(key, r, error);
+                entry.postedAt = PresenterMetrics.isEnabled() ? SystemClock.uptimeMillis() : -1;
+                if (tail == null) {
+                    head = entry;
+                } else {
+                    tail.next = entry;
+                }
+                tail = entry;
+                size++;
+                if (key != null) {
+                    pendingByKey.put(key, entry);
+                }
+                if (isScheduled || isPaused) {
+                    return;
+                }
+                isScheduled = true;
+            }
+        }
+        if (runNow) {
+            // nothing ahead of it, the order is kept and a pass of latency is saved
+            isDelivering = true;
+            deliver(r, error);
+            isDelivering = false;
+        } else if (isMainThread()) {
+            schedule();
+        } else {
+            mainHandler.post(scheduler);
+        }
+    }
+
+    void release() {
+        synchronized (this) {
+            isReleased = true;
+            head = tail = null;
+            size = 0;
+            pool = null;
+            poolSize = 0;
+            pendingByKey.clear();
+        }
+        mainHandler.removeCallbacksAndMessages(null);
+        if (isMainThread()) {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        flush();
+    }
+
+    @Override
+    public void run() {
+        flush();
+    }
+
+    private void schedule() {
+        boolean aligned;
+        synchronized (this) {
+            if (isReleased) {
+                return;
+            }
+            aligned = frameAligned;
+        }
+        if (aligned) {
+            Choreographer.getInstance().postFrameCallback(this);
+        } else {
+            mainHandler.post(this);
+        }
+    }
+
+    private void flush() {
+        int count;
+        synchronized (this) {
+            if (isPaused) {
+                isScheduled = false;
+                return;
+            }
+            count = size;
+        }
+        isDelivering = true;
+        // only the callbacks queued before this pass, the ones they post wait for the next pass
+        for (int i = 0; i < count; i++) {
+            Runnable r;
+            Throwable error;
+            long postedAt;
+            synchronized (this) {
+                Entry entry = head;
+                if (isPaused || entry == null) {
+                    break;
+                }
+                head = entry.next;
+                if (head == null) {
+                    tail = null;
+                }
+                size--;
+                if (entry.key != null) {
+                    pendingByKey.remove(entry.key);
+                }
+                r = entry.runnable;
+                error = entry.error;
+                postedAt = entry.postedAt;
+                recycle(entry);
+            }
+            if (postedAt >= 0 && PresenterMetrics.isEnabled()) {
+                owner.getMetrics().onMainDelivered(SystemClock.uptimeMillis() - postedAt);
+            }
+            deliver(r, error);
+        }
+        isDelivering = false;
+        boolean hasNext;
+        synchronized (this) {
+            hasNext = !isReleased && !isPaused && size > 0;
+            isScheduled = hasNext;
+        }
+        if (hasNext) {
+            schedule();
+        }
+    }
+
+    private void deliver(@Nullable Runnable r, @Nullable Throwable error) {
+        if (error != null) {
+            owner.deliverError(error);
+        } else {
+            owner.runGuarded(r);
+        }
+    }
+
+    /**
+     * Must hold the dispatcher lock.
+     */
+    @NonNull
+    private Entry obtain(@Nullable Object key, @Nullable Runnable r, @Nullable Throwable error) {
+        Entry entry = pool;
+        if (entry == null) {
+            entry = new Entry();
+        } else {
+            pool = entry.next;
+            poolSize--;
+        }
+        entry.key = key;
+        entry.runnable = r;
+        entry.error = error;
+        entry.next = null;
+        return entry;
+    }
+
+    /**
+     * Must hold the dispatcher lock.
+     */
+    private void recycle(@NonNull Entry entry) {
+        entry.key = null;
+        entry.runnable = null;
+        entry.error = null;
+        if (poolSize < MAX_POOL_SIZE) {
+            entry.next = pool;
+            pool = entry;
+            poolSize++;
+        } else {
+            entry.next = null;
+        }
+    }
+
+    private static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    private static class Entry {
+        Object key;
+        Runnable runnable;
+        Throwable error;
+        long postedAt;
+        Entry next;
+    }
+}
@@ -0,0 +1,346 @@
+package com.mct.components.baseui;
+
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Latency of the navigation calls of {@link BaseActivity}, from the call to the first frame drawn
+ * by the destination fragment.
+ * <p>
+ * Every span records when the call returned (transactions committed), when the destination
+ * created its view, when it was resumed and when its view was first drawn. The total is added to
+ * the histogram of the destination class and each span is handed to the {@link Listener listeners}.
+ * The spans also show up in system traces as {@code android.os.Trace} sections.
+ * <p>
+ * Off by default. When off a navigation call costs a counter.
+ */
+public final class NavigationTracer {
+
+    private static final String TAG = "MCT_NavTracer";
+
+    private static volatile boolean sEnabled;
+    private static final ConcurrentHashMap<String, PresenterMetrics.Histogram> sHistograms = new ConcurrentHashMap<>();
+    private static final CopyOnWriteArrayList<Listener> sListeners = new CopyOnWriteArrayList<>();
+    // main thread only
+    private static int sNextCookie;
+
+    private NavigationTracer() {
+        throw new UnsupportedOperationException("u can't instantiate me...");
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * @return latency to the first drawn frame per destination fragment class name
+     */
+    @NonNull
+    public static Map<String, PresenterMetrics.HistogramSnapshot> getSnapshots() {
+        Map<String, PresenterMetrics.HistogramSnapshot> snapshots = new HashMap<>();
+        for (Map.Entry<String, PresenterMetrics.Histogram> entry : sHistograms.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return snapshots;
+    }
+
+    public static void reset() {
+        sHistograms.clear();
+    }
+
+    public static void addListener(@NonNull Listener listener) {
+        sListeners.addIfAbsent(listener);
+    }
+
+    public static void removeListener(@NonNull Listener listener) {
+        sListeners.remove(listener);
+    }
+
+    private static void publish(@NonNull Report report) {
+        PresenterMetrics.Histogram histogram = sHistograms.get(report.destination);
+        if (histogram == null) {
+            histogram = new PresenterMetrics.Histogram();
+            PresenterMetrics.Histogram previous = sHistograms.putIfAbsent(report.destination, histogram);
+            if (previous != null) {
+                histogram = previous;
+            }
+        }
+        histogram.record(report.firstFrameMs);
+        if (sListeners.isEmpty()) {
+            Log.d(TAG, report.toString());
+            return;
+        }
+        for (Listener listener : sListeners) {
+            listener.onNavigation(report);
+        }
+    }
+
+    /**
+     * Tracer of the navigation calls of one activity. Main thread only.
+     */
+    static final class Session extends FragmentManager.FragmentLifecycleCallbacks {
+
+        private final int containerId;
+        private FragmentManager fragmentManager;
+        private int depth;
+        private boolean isInSection;
+        private Span span;
+
+        Session(int containerId) {
+            this.containerId = containerId;
+        }
+
+        @MainThread
+        void attach(@NonNull FragmentManager fm) {
+            fragmentManager = fm;
+            fm.registerFragmentLifecycleCallbacks(this, false);
+        }
+
+        @MainThread
+        void detach() {
+            if (fragmentManager != null) {
+                fragmentManager.unregisterFragmentLifecycleCallbacks(this);
+                fragmentManager = null;
+            }
+            abandon();
+        }
+
+        /**
+         * Open a span on the outermost navigation call, must be paired with {@link #end()}.
+         *
+         * @param destination fragment shown by the call, null for a pop
+         */
+        @MainThread
+        void begin(@NonNull String action, @Nullable Class<?> destination) {
+            if (depth++ > 0) {
+                if (span != null && span.destination == null) {
+                    span.destination = destination;
+                }
+                return;
+            }
+            abandon();
+            if (!sEnabled || fragmentManager == null) {
+                return;
+            }
+            span = new Span(action, destination, ++sNextCookie);
+            Trace.beginSection(span.sectionName());
+            isInSection = true;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.beginAsyncSection(span.sectionName(), span.cookie);
+            }
+        }
+
+        @MainThread
+        void end() {
+            if (--depth > 0) {
+                return;
+            }
+            if (isInSection) {
+                isInSection = false;
+                Trace.endSection();
+            }
+            // the destination may already be drawn after an immediate pop
+            if (span != null && span.committedAt == 0) {
+                span.committedAt = SystemClock.uptimeMillis();
+            }
+        }
+
+        @Override
+        public void onFragmentViewCreated(@NonNull FragmentManager fm, @NonNull Fragment f, @NonNull View v,
+                                          @Nullable Bundle savedInstanceState) {
+            if (isDestination(f) && span.viewCreatedAt == 0) {
+                span.viewCreatedAt = SystemClock.uptimeMillis();
+            }
+        }
+
+        @Override
+        public void onFragmentResumed(@NonNull FragmentManager fm, @NonNull Fragment f) {
+            if (!isDestination(f) || span.resumedAt != 0) {
+                return;
+            }
+            Span current = span;
+            current.destination = f.getClass();
+            current.resumedAt = SystemClock.uptimeMillis();
+            View view = f.getView();
+            if (view == null) {
+                finish(current, current.resumedAt);
+            } else {
+                current.awaitFirstDraw(this, view);
+            }
+        }
+
+        private boolean isDestination(@NonNull Fragment f) {
+            return span != null
+                    && f.getId() == containerId
+                    && (span.destination == null || span.destination == f.getClass());
+        }
+
+        private void finish(@NonNull Span finished, long drawnAt) {
+            if (span != finished) {
+                return;
+            }
+            span = null;
+            if (finished.committedAt == 0) {
+                finished.committedAt = drawnAt;
+            }
+            endAsyncSection(finished);
+            publish(finished.toReport(drawnAt));
+        }
+
+        private void abandon() {
+            if (span != null) {
+                span.stopAwaitingDraw();
+                endAsyncSection(span);
+                span = null;
+            }
+        }
+
+        private static void endAsyncSection(@NonNull Span span) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.endAsyncSection(span.sectionName(), span.cookie);
+            }
+        }
+    }
+
+    private static final class Span implements ViewTreeObserver.OnDrawListener {
+
+        final String action;
+        final int cookie;
+        final long startedAt = SystemClock.uptimeMillis();
+        Class<?> destination;
+        long committedAt;
+        long viewCreatedAt;
+        long resumedAt;
+        private Session session;
+        private View view;
+
+        Span(@NonNull String action, @Nullable Class<?> destination, int cookie) {
+            this.action = action;
+            this.destination = destination;
+            this.cookie = cookie;
+        }
+
+        @NonNull
+        String sectionName() {
+            return "MCT nav " + action;
+        }
+
+        void awaitFirstDraw(@NonNull Session session, @NonNull View view) {
+            this.session = session;
+            this.view = view;
+            view.getViewTreeObserver().addOnDrawListener(this);
+        }
+
+        @Override
+        public void onDraw() {
+            long drawnAt = SystemClock.uptimeMillis();
+            Session owner = session;
+            // a listener can not be removed while the tree is dispatching onDraw
+            View drawn = view;
+            if (drawn != null) {
+                drawn.post(this::stopAwaitingDraw);
+            }
+            if (owner != null) {
+                session = null;
+                owner.finish(this, drawnAt);
+            }
+        }
+
+        void stopAwaitingDraw() {
+            View drawn = view;
+            if (drawn == null) {
+                return;
+            }
+            view = null;
+            session = null;
+            ViewTreeObserver observer = drawn.getViewTreeObserver();
+            if (observer.isAlive()) {
+                observer.removeOnDrawListener(this);
+            }
+        }
+
+        @NonNull
+        Report toReport(long drawnAt) {
+            return new Report(destination != null ? destination.getName() : "unknown", action,
+                    committedAt - startedAt,
+                    viewCreatedAt == 0 ? -1 : viewCreatedAt - startedAt,
+                    resumedAt - startedAt,
+                    drawnAt - startedAt);
+        }
+    }
+
+    public static final class Report {
+
+        /**
+         * Class name of the fragment shown.
+         */
+        @NonNull
+        public final String destination;
+        /**
+         * Navigation call of {@link BaseActivity}, such as replaceFragment.
+         */
+        @NonNull
+        public final String action;
+        /**
+         * Time for the call to return.
+         */
+        public final long commitMs;
+        /**
+         * Time for the destination to create its view, -1 if it kept its view.
+         */
+        public final long viewCreatedMs;
+        public final long resumedMs;
+        /**
+         * Time for the first frame drawn by the destination, the total.
+         */
+        public final long firstFrameMs;
+
+        Report(@NonNull String destination, @NonNull String action, long commitMs, long viewCreatedMs,
+               long resumedMs, long firstFrameMs) {
+            this.destination = destination;
+            this.action = action;
+            this.commitMs = commitMs;
+            this.viewCreatedMs = viewCreatedMs;
+            this.resumedMs = resumedMs;
+            this.firstFrameMs = firstFrameMs;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return action + " -> " + destination + ": commit " + commitMs + "ms, view " + viewCreatedMs
+                    + "ms, resume " + resumedMs + "ms, first frame " + firstFrameMs + "ms";
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // INTERFACE
+    ///////////////////////////////////////////////////////////////////////////
+
+    public interface Listener {
+        /**
+         * Called on the main thread once the destination drew its first frame.
+         */
+        void onNavigation(@NonNull Report report);
+    }
+}
@@ -0,0 +1,209 @@
+package com.mct.components.baseui;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide memory cache behind {@link BasePresenter#load(Object, BasePresenter.Loader, BasePresenter.Callback)}.
+ * <p>
+ * Entries are evicted in LRU order above {@link #setMaxSize(int) max size} and become stale after
+ * their TTL. A stale entry is still delivered right away, then refreshed in the background
+ * (stale-while-revalidate). Concurrent loads of one key share a single computation.
+ * <p>
+ * Keys are shared by every presenter, use keys that can not collide across screens.
+ */
+public final class PresenterCache {
+
+    public static final int DEFAULT_MAX_SIZE = 64;
+    public static final long DEFAULT_TTL_MS = 5 * 60 * 1000;
+
+    private static final Object sLock = new Object();
+    private static final LinkedHashMap<Object, Entry> sEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Map<Object, Request> sInFlight = new HashMap<>();
+    private static int sMaxSize = DEFAULT_MAX_SIZE;
+
+    private PresenterCache() {
+        throw new UnsupportedOperationException("u can't instantiate me...");
+    }
+
+    public static void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize < 0");
+        }
+        synchronized (sLock) {
+            sMaxSize = maxSize;
+            trimToSize(maxSize);
+        }
+    }
+
+    public static int size() {
+        synchronized (sLock) {
+            return sEntries.size();
+        }
+    }
+
+    /**
+     * Drop an entry, the next load computes it again. A computation in flight is not cancelled,
+     * its waiters still get its value, but it may predate the invalidation so it is not cached
+     * and the next load does not join it.
+     */
+    public static void invalidate(@NonNull Object key) {
+        synchronized (sLock) {
+            sEntries.remove(key);
+            sInFlight.remove(key);
+        }
+    }
+
+    /**
+     * Drop every entry, like {@link #invalidate(Object)} for each key.
+     */
+    public static void clear() {
+        synchronized (sLock) {
+            sEntries.clear();
+            sInFlight.clear();
+        }
+    }
+
+    /**
+     * Drop the least recently used entries until at most maxSize are left.
+     */
+    public static void trimToSize(int maxSize) {
+        synchronized (sLock) {
+            Iterator<Entry> iterator = sEntries.values().iterator();
+            while (sEntries.size() > maxSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    static <T> void load(@NonNull BasePresenter presenter, @NonNull Object key, long ttlMs,
+                         @NonNull BasePresenter.Loader<T> loader, @NonNull BasePresenter.Callback<T> callback) {
+        Entry entry;
+        Request request;
+        boolean start = false;
+        synchronized (sLock) {
+            entry = sEntries.get(key);
+            if (entry != null && !entry.isStale(SystemClock.elapsedRealtime())) {
+                request = null;
+            } else {
+                request = sInFlight.get(key);
+                if (request == null) {
+                    request = new Request(key, ttlMs, loader);
+                    sInFlight.put(key, request);
+                    start = true;
+                }
+                request.waiters.add(new Waiter(presenter, callback, entry != null));
+            }
+        }
+        if (entry != null) {
+            deliver(presenter, callback, entry.value);
+        }
+        if (start) {
+            PresenterExecutor.getPool().execute(request);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void deliver(@NonNull BasePresenter presenter, @NonNull BasePresenter.Callback<T> callback, Object value) {
+        presenter.postMain(() -> callback.onResult((T) value));
+    }
+
+    private static void onLoaded(@NonNull Request request, Object value) {
+        List<Waiter> waiters;
+        synchronized (sLock) {
+            boolean isInvalidated = sInFlight.get(request.key) != request;
+            if (!isInvalidated) {
+                sInFlight.remove(request.key);
+            }
+            waiters = new ArrayList<>(request.waiters);
+            if (!isInvalidated && sMaxSize > 0) {
+                sEntries.put(request.key, new Entry(value, SystemClock.elapsedRealtime() + request.ttlMs));
+                trimToSize(sMaxSize);
+            }
+        }
+        for (Waiter waiter : waiters) {
+            deliver(waiter.presenter, waiter.callback, value);
+        }
+    }
+
+    private static void onFailed(@NonNull Request request, @NonNull Throwable t) {
+        List<Waiter> waiters;
+        synchronized (sLock) {
+            if (sInFlight.get(request.key) == request) {
+                sInFlight.remove(request.key);
+            }
+            waiters = new ArrayList<>(request.waiters);
+        }
+        for (Waiter waiter : waiters) {
+            // a waiter that already shows the stale value keeps it silently
+            if (!waiter.hasStaleValue) {
+                waiter.presenter.dispatchError(t);
+            }
+        }
+    }
+
+    private static class Entry {
+        final Object value;
+        final long expiresAt;
+
+        Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isStale(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    private static class Waiter {
+        final BasePresenter presenter;
+        final BasePresenter.Callback<?> callback;
+        final boolean hasStaleValue;
+
+        Waiter(BasePresenter presenter, BasePresenter.Callback<?> callback, boolean hasStaleValue) {
+            this.presenter = presenter;
+            this.callback = callback;
+            this.hasStaleValue = hasStaleValue;
+        }
+    }
+
+    /**
+     * A shared computation. It runs on the pool rather than on the lane of the presenter that
+     * started it, so releasing that presenter does not strand the other waiters.
+     */
+    private static class Request implements Runnable {
+        final Object key;
+        final long ttlMs;
+        final BasePresenter.Loader<?> loader;
+        // guarded by sLock
+        final List<Waiter> waiters = new ArrayList<>(2);
+
+        Request(Object key, long ttlMs, BasePresenter.Loader<?> loader) {
+            this.key = key;
+            this.ttlMs = ttlMs;
+            this.loader = loader;
+        }
+
+        @Override
+        public void run() {
+            Object value;
+            try {
+                value = loader.load();
+            } catch (Throwable t) {
+                onFailed(this, t);
+                return;
+            }
+            onLoaded(this, value);
+        }
+    }
+}
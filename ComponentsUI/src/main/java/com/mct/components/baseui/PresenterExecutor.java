@@ -0,0 +1,194 @@
+package com.mct.components.baseui;
+
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide worker pool shared by every {@link BasePresenter}.
+ * <p>
+ * Presenters never submit to the pool directly, they go through their own {@link PresenterLane}
+ * which keeps the serial ordering of {@link BasePresenter#exec(Runnable)}. The cache requests,
+ * the parts of {@code execAll} and the prewarm inflations are submitted to it as they are.
+ * <p>
+ * Presenter work is mostly blocking I/O (network, database), which a time slice can not
+ * preempt, so the pool is sized for I/O rather than for the CPU count: a submission with no idle
+ * worker starts a new one, up to {@link #MAX_POOL_SIZE}, so a few slow loads can not stall the
+ * lanes of the other presenters. Over it the work waits for the first free worker. Idle workers
+ * die after {@link #KEEP_ALIVE_SECONDS}, so a quiet process holds no presenter threads.
+ * <p>
+ * The waiting work is kept in an {@link ArrayDeque}, unlike the linked queue of a
+ * {@code ThreadPoolExecutor} it allocates nothing per submission once it has grown.
+ */
+final class PresenterExecutor {
+
+    static final int MAX_POOL_SIZE = 32;
+    static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static volatile Pool sPool;
+
+    private PresenterExecutor() {
+        throw new UnsupportedOperationException("u can't instantiate me...");
+    }
+
+    @NonNull
+    static Executor getPool() {
+        Pool pool = sPool;
+        if (pool == null) {
+            synchronized (PresenterExecutor.class) {
+                pool = sPool;
+                if (pool == null) {
+                    sPool = pool = new Pool(MAX_POOL_SIZE, TimeUnit.SECONDS.toNanos(KEEP_ALIVE_SECONDS));
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * @return true on a worker of the pool, which must never wait for a lane: the work that would
+     * free the lane may need this very worker
+     */
+    static boolean isWorkerThread() {
+        return Thread.currentThread() instanceof Worker;
+    }
+
+    @NonNull
+    static PresenterLane newLane(@NonNull BasePresenter owner) {
+        return new PresenterLane(getPool(), owner);
+    }
+
+    private static final class Worker extends Thread {
+
+        Worker(@NonNull Runnable r, @NonNull String name) {
+            super(r, name);
+        }
+    }
+
+    /**
+     * Bounded cached pool: grows on demand up to maxSize workers, shrinks when idle.
+     */
+    static final class Pool implements Executor {
+
+        private final int maxSize;
+        private final long keepAliveNanos;
+        private final AtomicInteger threadCount = new AtomicInteger(1);
+        // guarded by this
+        private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+        private int workerCount;
+        private int runningCount;
+        private int idleCount;
+        // idle workers woken for a submission, not counted in idleCount any more
+        private int signalCount;
+
+        Pool(int maxSize, long keepAliveNanos) {
+            this.maxSize = maxSize;
+            this.keepAliveNanos = keepAliveNanos;
+        }
+
+        @Override
+        public void execute(@NonNull Runnable r) {
+            boolean isNewWorker = false;
+            synchronized (this) {
+                queue.offer(r);
+                if (idleCount > 0) {
+                    idleCount--;
+                    signalCount++;
+                    notify();
+                } else if (queue.size() > workerCount - runningCount && workerCount < maxSize) {
+                    // a worker done with its work takes the next one on its way back to idle
+                    workerCount++;
+                    isNewWorker = true;
+                }
+            }
+            if (isNewWorker) {
+                startWorker();
+            }
+        }
+
+        private void startWorker() {
+            new Worker(this::work, "MCT_Presenter #" + threadCount.getAndIncrement()).start();
+        }
+
+        synchronized int getWorkerCount() {
+            return workerCount;
+        }
+
+        synchronized int getIdleCount() {
+            return idleCount;
+        }
+
+        private void work() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            Runnable r = take(false);
+            while (r != null) {
+                boolean isCompleted = false;
+                try {
+                    r.run();
+                    isCompleted = true;
+                } finally {
+                    if (!isCompleted) {
+                        // the failure goes to the uncaught exception handler like in a thread pool,
+                        // the waiting work gets a new worker
+                        boolean isReplaced;
+                        synchronized (this) {
+                            runningCount--;
+                            isReplaced = queue.size() > workerCount - 1 - runningCount;
+                            if (!isReplaced) {
+                                workerCount--;
+                            }
+                        }
+                        if (isReplaced) {
+                            startWorker();
+                        }
+                    }
+                }
+                // a cancel interrupt must not leak into the next work of this worker
+                Thread.interrupted();
+                r = take(true);
+            }
+        }
+
+        /**
+         * @param hasRun true when this worker just finished a work
+         * @return the next work, null once this worker was idle for the keep alive time
+         */
+        @Nullable
+        private synchronized Runnable take(boolean hasRun) {
+            if (hasRun) {
+                runningCount--;
+            }
+            boolean isTimedOut = false;
+            while (true) {
+                Runnable r = queue.poll();
+                if (r != null) {
+                    runningCount++;
+                    return r;
+                }
+                if (isTimedOut) {
+                    workerCount--;
+                    return null;
+                }
+                idleCount++;
+                long idleSince = System.nanoTime();
+                try {
+                    wait(TimeUnit.NANOSECONDS.toMillis(keepAliveNanos));
+                } catch (InterruptedException ignored) {
+                    // workers are only interrupted to cancel their work, keep serving
+                }
+                if (signalCount > 0) {
+                    signalCount--;
+                } else {
+                    idleCount--;
+                    isTimedOut = System.nanoTime() - idleSince >= keepAliveNanos;
+                }
+            }
+        }
+    }
+}
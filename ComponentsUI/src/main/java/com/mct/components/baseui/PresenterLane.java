@@ -0,0 +1,428 @@
+package com.mct.components.baseui;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * A serial lane on top of the shared {@link PresenterExecutor} pool.
+ * <p>
+ * Tasks of one lane run one after another, while tasks of different lanes run in parallel on
+ * the pool. The lane keeps a worker for at most {@link #DRAIN_SLICE_MS} before handing it back
+ * to the pool, so a busy presenter can not hold every worker.
+ * <p>
+ * Waiting tasks are kept in one intrusive FIFO queue per {@link BasePresenter.Priority}. The next
+ * task is the head with the most urgent priority, where a head gains one level for every
+ * {@link #AGING_STEP_MS} it has waited, so low priority work can not starve.
+ * <p>
+ * The number of waiting tasks can be bounded, a submission to a full lane is handled by the
+ * {@link BasePresenter.Overflow} policy. {@link BasePresenter.Overflow#BLOCK} only blocks the
+ * threads that can: on the main thread or on a pool worker, such as a task chaining an
+ * {@code exec} on its own full lane, waiting would never end, the submission is rejected instead.
+ */
+final class PresenterLane {
+
+    static final long AGING_STEP_MS = 500;
+    static final long DRAIN_SLICE_MS = 8;
+
+    private final Executor pool;
+    private final BasePresenter owner;
+    private final TaskQueue[] queues;
+    private final Map<Object, PresenterTask> pendingByKey = new HashMap<>();
+    private final Runnable drain = this::drain;
+    private PresenterTask running;
+    private boolean isScheduled;
+    private boolean isClosed;
+    private int size;
+    private long seq;
+    private int capacity = Integer.MAX_VALUE;
+    private BasePresenter.Overflow overflow = BasePresenter.Overflow.BLOCK;
+    private int blockedCount;
+    private long droppedCount;
+    private long rejectedCount;
+
+    PresenterLane(@NonNull Executor pool, @NonNull BasePresenter owner) {
+        this.pool = pool;
+        this.owner = owner;
+        this.queues = new TaskQueue[BasePresenter.Priority.values().length];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new TaskQueue();
+        }
+    }
+
+    synchronized void setCapacity(int capacity, @NonNull BasePresenter.Overflow overflow) {
+        this.capacity = capacity;
+        this.overflow = overflow;
+        // a blocked submitter may fit now
+        notifyAll();
+    }
+
+    synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Queue a task whose handle is not needed, it runs on a pooled task node.
+     *
+     * @param body     the work
+     * @param priority ordinal of the {@link BasePresenter.Priority}
+     */
+    void execute(@NonNull Runnable body, int priority) {
+        enqueue(null, body, priority, true);
+    }
+
+    /**
+     * Queue a task. When a task with the same key is still waiting, its work is replaced by
+     * the new one in place (raising its priority if needed) and its handle is returned,
+     * so a burst of submissions runs once.
+     * <p>
+     * When the lane is full the {@link BasePresenter.Overflow} policy applies, a dropped or
+     * rejected submission gets a cancelled handle.
+     *
+     * @param key      coalescing key, null to always queue
+     * @param body     the work
+     * @param priority ordinal of the {@link BasePresenter.Priority}
+     * @return handle of the queued task
+     */
+    @NonNull
+    BasePresenter.TaskHandle submit(@Nullable Object key, @NonNull Runnable body, int priority) {
+        return enqueue(key, body, priority, false);
+    }
+
+    @NonNull
+    private BasePresenter.TaskHandle enqueue(@Nullable Object key, @NonNull Runnable body, int priority, boolean pooled) {
+        PresenterTask task;
+        boolean isRejected = false;
+        boolean notifyRejected = false;
+        synchronized (this) {
+            while (true) {
+                if (isClosed) {
+                    return BasePresenter.CANCELLED;
+                }
+                if (key != null) {
+                    PresenterTask pending = pendingByKey.get(key);
+                    if (pending != null && pending.replace(body)) {
+                        if (priority < pending.priority) {
+                            queues[pending.priority].remove(pending);
+                            pending.priority = priority;
+                            queues[priority].offer(pending);
+                        }
+                        return pending;
+                    }
+                }
+                if (size < capacity) {
+                    break;
+                }
+                if (overflow == BasePresenter.Overflow.DROP_OLDEST && size > 0) {
+                    dropOldest();
+                    break;
+                }
+                if (overflow != BasePresenter.Overflow.BLOCK || !canBlock()) {
+                    isRejected = true;
+                    break;
+                }
+                blockedCount++;
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return BasePresenter.CANCELLED;
+                } finally {
+                    blockedCount--;
+                }
+            }
+            if (isRejected) {
+                task = null;
+                onDropped();
+                if (overflow == BasePresenter.Overflow.REJECT || overflow == BasePresenter.Overflow.BLOCK) {
+                    rejectedCount++;
+                    notifyRejected = true;
+                } else {
+                    droppedCount++;
+                }
+            } else {
+                task = pooled
+                        ? PresenterTask.obtain(this, body, priority)
+                        : PresenterTask.create(this, key, body, priority);
+                task.enqueuedAt = SystemClock.uptimeMillis();
+                task.seq = seq++;
+                queues[priority].offer(task);
+                size++;
+                if (PresenterMetrics.isEnabled()) {
+                    task.isMetered = true;
+                    owner.getMetrics().onQueued();
+                }
+                if (key != null) {
+                    pendingByKey.put(key, task);
+                }
+                if (isScheduled) {
+                    return task;
+                }
+                isScheduled = true;
+            }
+        }
+        if (task == null) {
+            if (notifyRejected) {
+                owner.onTaskRejected(body);
+            }
+            return BasePresenter.CANCELLED;
+        }
+        pool.execute(drain);
+        return task;
+    }
+
+    /**
+     * Cancel the waiting and the running task of a key.
+     *
+     * @return true if any task was cancelled
+     */
+    boolean cancel(@NonNull Object key) {
+        PresenterTask pending;
+        PresenterTask current;
+        synchronized (this) {
+            pending = pendingByKey.get(key);
+            current = running != null && key.equals(running.key) ? running : null;
+        }
+        // keyed tasks are never pooled, so they are still the same tasks outside the lock
+        boolean cancelled = pending != null && pending.cancel();
+        return (current != null && current.cancel()) || cancelled;
+    }
+
+    /**
+     * Cancel every task of this lane, the waiting ones are dropped and the running one is interrupted.
+     */
+    synchronized void cancelAll() {
+        for (TaskQueue queue : queues) {
+            PresenterTask task;
+            while ((task = queue.poll()) != null) {
+                onDequeued(task);
+                task.markCancelled();
+                task.recycle();
+            }
+        }
+        // the running task is recycled only after it is cleared under this lock
+        if (running != null) {
+            running.markCancelled();
+        }
+        pendingByKey.clear();
+        size = 0;
+        isClosed = true;
+        notifyAll();
+    }
+
+    synchronized void remove(@NonNull PresenterTask task) {
+        if (queues[task.priority].remove(task)) {
+            size--;
+            onDequeued(task);
+            onSpaceFreed();
+        }
+        if (task.key != null && pendingByKey.get(task.key) == task) {
+            pendingByKey.remove(task.key);
+        }
+    }
+
+    void dispatchError(@NonNull Throwable t) {
+        owner.dispatchError(t);
+    }
+
+    /**
+     * Take the head with the best aged priority, the oldest one on a tie. Must hold the lane lock.
+     */
+    @Nullable
+    private PresenterTask pollNext() {
+        if (size == 0) {
+            return null;
+        }
+        long now = SystemClock.uptimeMillis();
+        PresenterTask best = null;
+        long bestRank = Long.MAX_VALUE;
+        for (TaskQueue queue : queues) {
+            PresenterTask head = queue.head;
+            if (head == null) {
+                continue;
+            }
+            long rank = Math.max(0, head.priority - (now - head.enqueuedAt) / AGING_STEP_MS);
+            if (best == null || rank < bestRank || (rank == bestRank && head.seq < best.seq)) {
+                best = head;
+                bestRank = rank;
+            }
+        }
+        queues[best.priority].remove(best);
+        size--;
+        onDequeued(best);
+        onSpaceFreed();
+        return best;
+    }
+
+    /**
+     * Cancel the task waiting the longest, whatever its priority. Must hold the lane lock.
+     */
+    private void dropOldest() {
+        PresenterTask oldest = null;
+        for (TaskQueue queue : queues) {
+            PresenterTask head = queue.head;
+            if (head != null && (oldest == null || head.seq < oldest.seq)) {
+                oldest = head;
+            }
+        }
+        if (oldest != null) {
+            droppedCount++;
+            onDropped();
+            queues[oldest.priority].remove(oldest);
+            size--;
+            onDequeued(oldest);
+            if (oldest.key != null && pendingByKey.get(oldest.key) == oldest) {
+                pendingByKey.remove(oldest.key);
+            }
+            oldest.markCancelled();
+            oldest.recycle();
+        }
+    }
+
+    /**
+     * Only the drain can free space: a pool worker, maybe the one running the drain of this
+     * lane, must not wait for it, nor must the main thread.
+     */
+    private static boolean canBlock() {
+        return !PresenterExecutor.isWorkerThread() && Looper.myLooper() != Looper.getMainLooper();
+    }
+
+    private void onSpaceFreed() {
+        if (blockedCount > 0) {
+            notifyAll();
+        }
+    }
+
+    private void onDropped() {
+        if (PresenterMetrics.isEnabled()) {
+            owner.getMetrics().onDropped();
+        }
+    }
+
+    private void onDequeued(@NonNull PresenterTask task) {
+        if (task.isMetered) {
+            task.isMetered = false;
+            owner.getMetrics().onDequeued();
+        }
+    }
+
+    /**
+     * Run the waiting tasks until the lane is empty or the time slice is used up, then give the
+     * worker back to the pool.
+     */
+    private void drain() {
+        long sliceEnd = SystemClock.uptimeMillis() + DRAIN_SLICE_MS;
+        while (true) {
+            PresenterTask task;
+            synchronized (this) {
+                task = pollNext();
+                if (task == null) {
+                    isScheduled = false;
+                    return;
+                }
+                if (task.key != null && pendingByKey.get(task.key) == task) {
+                    pendingByKey.remove(task.key);
+                }
+                running = task;
+            }
+            boolean metered = PresenterMetrics.isEnabled();
+            long startedAt = 0;
+            if (metered) {
+                startedAt = SystemClock.uptimeMillis();
+                owner.getMetrics().onStarted(startedAt - task.enqueuedAt);
+            }
+            boolean hasNext = false;
+            boolean isCompleted = false;
+            long now;
+            try {
+                task.run();
+                isCompleted = true;
+            } finally {
+                now = SystemClock.uptimeMillis();
+                if (metered) {
+                    owner.getMetrics().onFinished(now - startedAt);
+                }
+                synchronized (this) {
+                    running = null;
+                    hasNext = size > 0;
+                    isScheduled = hasNext;
+                }
+                task.recycle();
+                if (!isCompleted && hasNext) {
+                    pool.execute(drain);
+                }
+            }
+            if (!hasNext) {
+                return;
+            }
+            if (now >= sliceEnd) {
+                pool.execute(drain);
+                return;
+            }
+        }
+    }
+
+    /**
+     * FIFO linked through {@link PresenterTask#prev} and {@link PresenterTask#next}, so offer and
+     * remove allocate nothing and remove is O(1). Guarded by the lane lock.
+     */
+    private static final class TaskQueue {
+
+        PresenterTask head;
+        PresenterTask tail;
+
+        void offer(@NonNull PresenterTask task) {
+            task.prev = tail;
+            task.next = null;
+            if (tail == null) {
+                head = task;
+            } else {
+                tail.next = task;
+            }
+            tail = task;
+            task.isQueued = true;
+        }
+
+        @Nullable
+        PresenterTask poll() {
+            PresenterTask task = head;
+            if (task != null) {
+                remove(task);
+            }
+            return task;
+        }
+
+        /**
+         * @return false if the task is not queued
+         */
+        boolean remove(@NonNull PresenterTask task) {
+            if (!task.isQueued) {
+                return false;
+            }
+            if (task.prev == null) {
+                head = task.next;
+            } else {
+                task.prev.next = task.next;
+            }
+            if (task.next == null) {
+                tail = task.prev;
+            } else {
+                task.next.prev = task.prev;
+            }
+            task.prev = null;
+            task.next = null;
+            task.isQueued = false;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.mct.components.baseui;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Runtime metrics of {@link BasePresenter} work, per presenter class and for the whole process.
+ * <p>
+ * Collected values: queue depth of the background lanes, wait time from submission to start,
+ * run time, latency from {@link BasePresenter#postMain(Runnable)} to the callback, the number of
+ * errors routed to {@link BaseView#onFalse(Throwable)} and the tasks dropped by full lanes.
+ * <p>
+ * Collection is off by default and costs a volatile read when off. When on, recording only
+ * touches primitive counters and fixed bucket histograms, nothing is allocated on the hot path.
+ * Use {@link #getProcessSnapshot()} / {@link #getSnapshots()} or {@link #publish()} with a
+ * {@link Listener} to export them.
+ */
+public final class PresenterMetrics {
+
+    /**
+     * Histogram buckets, bucket i counts the values in [2^(i-1), 2^i) ms, bucket 0 is under 1 ms
+     * and the last bucket is everything from 1024 ms.
+     */
+    public static final int BUCKET_COUNT = 12;
+
+    private static volatile boolean sEnabled;
+    private static final Recorder sProcess = new Recorder("process", null);
+    private static final ConcurrentHashMap<Class<?>, Recorder> sRecorders = new ConcurrentHashMap<>();
+    private static final CopyOnWriteArrayList<Listener> sListeners = new CopyOnWriteArrayList<>();
+
+    private PresenterMetrics() {
+        throw new UnsupportedOperationException("u can't instantiate me...");
+    }
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    @NonNull
+    public static Snapshot getProcessSnapshot() {
+        return sProcess.snapshot();
+    }
+
+    /**
+     * @return snapshot of every presenter class that recorded something, keyed by class name
+     */
+    @NonNull
+    public static Map<String, Snapshot> getSnapshots() {
+        Map<String, Snapshot> snapshots = new HashMap<>();
+        for (Recorder recorder : sRecorders.values()) {
+            snapshots.put(recorder.name, recorder.snapshot());
+        }
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+    /**
+     * Clear every counter and histogram. Queue depth gauges are kept, they describe live queues.
+     */
+    public static void reset() {
+        sProcess.reset();
+        for (Recorder recorder : sRecorders.values()) {
+            recorder.reset();
+        }
+    }
+
+    public static void addListener(@NonNull Listener listener) {
+        sListeners.addIfAbsent(listener);
+    }
+
+    public static void removeListener(@NonNull Listener listener) {
+        sListeners.remove(listener);
+    }
+
+    /**
+     * Take the snapshots and hand them to every listener, on the calling thread.
+     */
+    public static void publish() {
+        if (sListeners.isEmpty()) {
+            return;
+        }
+        Snapshot process = getProcessSnapshot();
+        Map<String, Snapshot> presenters = getSnapshots();
+        for (Listener listener : sListeners) {
+            listener.onMetrics(process, presenters);
+        }
+    }
+
+    @NonNull
+    static Recorder recorderOf(@NonNull Class<?> cls) {
+        Recorder recorder = sRecorders.get(cls);
+        if (recorder == null) {
+            Recorder created = new Recorder(cls.getName(), sProcess);
+            recorder = sRecorders.putIfAbsent(cls, created);
+            if (recorder == null) {
+                recorder = created;
+            }
+        }
+        return recorder;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // RECORDING
+    ///////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Recorder of one presenter class, every record is also added to the process recorder.
+     */
+    static final class Recorder {
+
+        final String name;
+        private final Recorder parent;
+        private final AtomicInteger queueDepth = new AtomicInteger();
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final Histogram waitTime = new Histogram();
+        private final Histogram runTime = new Histogram();
+        private final Histogram mainLatency = new Histogram();
+
+        Recorder(@NonNull String name, Recorder parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        void onQueued() {
+            submitted.incrementAndGet();
+            int depth = queueDepth.incrementAndGet();
+            int max;
+            while (depth > (max = maxQueueDepth.get())) {
+                if (maxQueueDepth.compareAndSet(max, depth)) {
+                    break;
+                }
+            }
+            if (parent != null) parent.onQueued();
+        }
+
+        void onDequeued() {
+            queueDepth.decrementAndGet();
+            if (parent != null) parent.onDequeued();
+        }
+
+        void onStarted(long waitMs) {
+            waitTime.record(waitMs);
+            if (parent != null) parent.onStarted(waitMs);
+        }
+
+        void onFinished(long runMs) {
+            runTime.record(runMs);
+            if (parent != null) parent.onFinished(runMs);
+        }
+
+        void onMainDelivered(long latencyMs) {
+            mainLatency.record(latencyMs);
+            if (parent != null) parent.onMainDelivered(latencyMs);
+        }
+
+        void onError() {
+            errors.incrementAndGet();
+            if (parent != null) parent.onError();
+        }
+
+        void onDropped() {
+            dropped.incrementAndGet();
+            if (parent != null) parent.onDropped();
+        }
+
+        void reset() {
+            maxQueueDepth.set(queueDepth.get());
+            submitted.set(0);
+            errors.set(0);
+            dropped.set(0);
+            waitTime.reset();
+            runTime.reset();
+            mainLatency.reset();
+        }
+
+        @NonNull
+        Snapshot snapshot() {
+            return new Snapshot(name,
+                    Math.max(0, queueDepth.get()), maxQueueDepth.get(),
+                    submitted.get(), errors.get(), dropped.get(),
+                    waitTime.snapshot(), runTime.snapshot(), mainLatency.snapshot());
+        }
+    }
+
+    static final class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sumMs = new AtomicLong();
+        private final AtomicLong maxMs = new AtomicLong();
+
+        void record(long ms) {
+            if (ms < 0) ms = 0;
+            int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(ms));
+            buckets.incrementAndGet(bucket);
+            count.incrementAndGet();
+            sumMs.addAndGet(ms);
+            long max;
+            while (ms > (max = maxMs.get())) {
+                if (maxMs.compareAndSet(max, ms)) {
+                    break;
+                }
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            sumMs.set(0);
+            maxMs.set(0);
+        }
+
+        @NonNull
+        HistogramSnapshot snapshot() {
+            long[] values = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                values[i] = buckets.get(i);
+            }
+            return new HistogramSnapshot(count.get(), sumMs.get(), maxMs.get(), values);
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // SNAPSHOT
+    ///////////////////////////////////////////////////////////////////////////
+
+    public static final class Snapshot {
+
+        /**
+         * Presenter class name, or "process" for the whole process.
+         */
+        public final String name;
+        public final int queueDepth;
+        public final int maxQueueDepth;
+        public final long submitted;
+        /**
+         * Errors routed to {@link BaseView#onFalse(Throwable)}.
+         */
+        public final long errors;
+        /**
+         * Tasks dropped or rejected by a full lane, see {@link BasePresenter.Overflow}.
+         */
+        public final long dropped;
+        /**
+         * Time from submission to start of the background tasks.
+         */
+        public final HistogramSnapshot waitTime;
+        /**
+         * Run time of the background tasks.
+         */
+        public final HistogramSnapshot runTime;
+        /**
+         * Time from postMain to the callback on the main thread.
+         */
+        public final HistogramSnapshot mainLatency;
+
+        Snapshot(String name, int queueDepth, int maxQueueDepth, long submitted, long errors, long dropped,
+                 HistogramSnapshot waitTime, HistogramSnapshot runTime, HistogramSnapshot mainLatency) {
+            this.name = name;
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.submitted = submitted;
+            this.errors = errors;
+            this.dropped = dropped;
+            this.waitTime = waitTime;
+            this.runTime = runTime;
+            this.mainLatency = mainLatency;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return name + "{depth=" + queueDepth + ", maxDepth=" + maxQueueDepth +
+                    ", submitted=" + submitted + ", errors=" + errors + ", dropped=" + dropped +
+                    ", wait=" + waitTime + ", run=" + runTime + ", main=" + mainLatency + "}";
+        }
+    }
+
+    public static final class HistogramSnapshot {
+
+        public final long count;
+        public final long sumMs;
+        public final long maxMs;
+        private final long[] buckets;
+
+        HistogramSnapshot(long count, long sumMs, long maxMs, long[] buckets) {
+            this.count = count;
+            this.sumMs = sumMs;
+            this.maxMs = maxMs;
+            this.buckets = buckets;
+        }
+
+        public long getBucket(int index) {
+            return buckets[index];
+        }
+
+        /**
+         * @return exclusive upper bound of a bucket in ms, {@link Long#MAX_VALUE} for the last one
+         */
+        public static long getBucketUpperBoundMs(int index) {
+            return index >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << index;
+        }
+
+        /**
+         * @param percentile in [0, 100]
+         * @return upper bound of the bucket holding the percentile, capped to the max value
+         */
+        public long getPercentileMs(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(count * percentile / 100d);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets[i];
+                if (seen >= target) {
+                    return Math.min(getBucketUpperBoundMs(i), maxMs);
+                }
+            }
+            return maxMs;
+        }
+
+        public double getMeanMs() {
+            return count == 0 ? 0 : (double) sumMs / count;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "{n=" + count + ", mean=" + getMeanMs() + ", p50=" + getPercentileMs(50) +
+                    ", p95=" + getPercentileMs(95) + ", max=" + maxMs + "}";
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////
+    // INTERFACE
+    ///////////////////////////////////////////////////////////////////////////
+
+    public interface Listener {
+        /**
+         * @param process    metrics of the whole process
+         * @param presenters metrics per presenter class name
+         */
+        void onMetrics(@NonNull Snapshot process, @NonNull Map<String, Snapshot> presenters);
+    }
+}
@@ -0,0 +1,149 @@
+package com.mct.components.baseui;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A load retried with backoff and bounded by a deadline, see
+ * {@link BasePresenter#exec(BasePresenter.Loader, RetryPolicy, long, BasePresenter.Callback)}.
+ * <p>
+ * Every attempt is a task of the presenter lane. The waits between attempts and the deadline are
+ * timers of the main looper, so no worker is held while a retry is pending and the other tasks
+ * of the presenter keep flowing.
+ */
+final class PresenterRetryTask<T> implements BasePresenter.TaskHandle {
+
+    private static final int RUNNING = 0;
+    private static final int DONE = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private final Handler timer = new Handler(Looper.getMainLooper());
+    private final BasePresenter owner;
+    private final BasePresenter.Loader<T> loader;
+    private final RetryPolicy policy;
+    private final BasePresenter.Callback<T> callback;
+    private final BasePresenter.Priority priority;
+    private final long deadlineMs;
+    private final Runnable attempt = this::submitAttempt;
+    private final Runnable timeout = this::onTimeout;
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    private volatile BasePresenter.TaskHandle current;
+    private long deadlineAt;
+    // attempts run one at a time on the lane
+    private int failures;
+
+    PresenterRetryTask(@NonNull BasePresenter owner,
+                       @NonNull BasePresenter.Loader<T> loader,
+                       @NonNull RetryPolicy policy,
+                       long deadlineMs,
+                       @NonNull BasePresenter.Priority priority,
+                       @NonNull BasePresenter.Callback<T> callback) {
+        this.owner = owner;
+        this.loader = loader;
+        this.policy = policy;
+        this.deadlineMs = deadlineMs;
+        this.priority = priority;
+        this.callback = callback;
+    }
+
+    void start() {
+        if (deadlineMs > 0) {
+            deadlineAt = SystemClock.uptimeMillis() + deadlineMs;
+            timer.postAtTime(timeout, deadlineAt);
+        }
+        submitAttempt();
+    }
+
+    @Override
+    public boolean cancel() {
+        if (!finish(CANCELLED)) {
+            return false;
+        }
+        BasePresenter.TaskHandle handle = current;
+        if (handle != null) {
+            handle.cancel();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return state.get() != RUNNING;
+    }
+
+    private void submitAttempt() {
+        if (state.get() != RUNNING) {
+            return;
+        }
+        BasePresenter.TaskHandle handle = owner.exec(null, this::runAttempt, priority);
+        current = handle;
+        if (handle == BasePresenter.CANCELLED) {
+            // released, or dropped by a full lane
+            cancel();
+        }
+    }
+
+    private void runAttempt() {
+        if (state.get() != RUNNING) {
+            return;
+        }
+        T value;
+        try {
+            value = loader.load();
+        } catch (Throwable t) {
+            if (state.get() != RUNNING) {
+                return;
+            }
+            failures++;
+            if (failures < policy.getMaxAttempts() && policy.shouldRetry(t)) {
+                long delay = policy.getDelayMs(failures);
+                long retryAt = SystemClock.uptimeMillis() + delay;
+                if (deadlineAt == 0 || retryAt < deadlineAt) {
+                    timer.postAtTime(attempt, retryAt);
+                    return;
+                }
+            }
+            if (finish(FAILED)) {
+                owner.dispatchError(t);
+            }
+            return;
+        }
+        if (finish(DONE)) {
+            owner.postMain(() -> callback.onResult(value));
+        }
+    }
+
+    private void onTimeout() {
+        if (!finish(FAILED)) {
+            return;
+        }
+        BasePresenter.TaskHandle handle = current;
+        if (handle != null) {
+            // interrupts a running attempt, its failure is then ignored
+            handle.cancel();
+        }
+        owner.dispatchError(new TimeoutException("Task timed out after " + deadlineMs + "ms"));
+    }
+
+    private boolean finish(int finalState) {
+        if (!state.compareAndSet(RUNNING, finalState)) {
+            return false;
+        }
+        timer.removeCallbacks(attempt);
+        timer.removeCallbacks(timeout);
+        owner.onTaskFinished(this);
+        return true;
+    }
+}
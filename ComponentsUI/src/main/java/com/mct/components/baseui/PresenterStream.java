@@ -0,0 +1,201 @@
+package com.mct.components.baseui;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A background load delivering its result in chunks, see
+ * {@link BasePresenter#stream(BasePresenter.StreamLoader, BasePresenter.StreamCallback)}.
+ * <p>
+ * Emitted chunks are buffered and handed to the view at most once per frame, all the chunks of
+ * a frame together. The delivery goes through the main dispatcher of the presenter keyed by this
+ * stream, so it waits while the presenter is paused. The loading UI of the view is shown from the
+ * start until the first chunk, the completion or the failure.
+ */
+final class PresenterStream<C> implements BasePresenter.TaskHandle, BasePresenter.Emitter<C>,
+        Choreographer.FrameCallback, Runnable {
+
+    private static final int RUNNING = 0;
+    private static final int DONE = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final BasePresenter owner;
+    private final BasePresenter.StreamLoader<C> loader;
+    private final BasePresenter.StreamCallback<C> callback;
+    private final Runnable deliver = this::deliver;
+    private final Runnable hideLoading = this::hideLoading;
+    private BasePresenter.TaskHandle task;
+    // guarded by this
+    private List<C> chunks = new ArrayList<>();
+    private int state = RUNNING;
+    private Throwable error;
+    private boolean isScheduled;
+    private boolean isFinished;
+    // main thread only
+    private boolean isLoadingShown;
+    private boolean isFirstDelivered;
+
+    PresenterStream(@NonNull BasePresenter owner,
+                    @NonNull BasePresenter.StreamLoader<C> loader,
+                    @NonNull BasePresenter.StreamCallback<C> callback) {
+        this.owner = owner;
+        this.loader = loader;
+        this.callback = callback;
+    }
+
+    void start(@NonNull BasePresenter.Priority priority) {
+        owner.postMain(this::showLoading);
+        BasePresenter.TaskHandle handle = owner.exec(null, this::load, priority);
+        synchronized (this) {
+            task = handle;
+        }
+        if (handle == BasePresenter.CANCELLED) {
+            cancel();
+        }
+    }
+
+    @Override
+    public void emit(@NonNull C chunk) {
+        synchronized (this) {
+            if (state != RUNNING) {
+                return;
+            }
+            chunks.add(chunk);
+        }
+        scheduleDelivery();
+    }
+
+    @Override
+    public boolean cancel() {
+        BasePresenter.TaskHandle handle;
+        synchronized (this) {
+            if (state != RUNNING) {
+                return false;
+            }
+            state = CANCELLED;
+            chunks.clear();
+            handle = task;
+        }
+        if (handle != null) {
+            handle.cancel();
+        }
+        mainHandler.removeCallbacks(this);
+        mainHandler.post(hideLoading);
+        owner.onTaskFinished(this);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != RUNNING;
+    }
+
+    private void load() {
+        Throwable failure = null;
+        try {
+            loader.load(this);
+        } catch (Throwable t) {
+            failure = t;
+        }
+        synchronized (this) {
+            if (state != RUNNING) {
+                return;
+            }
+            state = failure == null ? DONE : FAILED;
+            error = failure;
+        }
+        owner.onTaskFinished(this);
+        scheduleDelivery();
+    }
+
+    /**
+     * Hop to the main thread, then wait for the next frame.
+     */
+    private void scheduleDelivery() {
+        synchronized (this) {
+            if (isScheduled) {
+                return;
+            }
+            isScheduled = true;
+        }
+        mainHandler.post(this);
+    }
+
+    @Override
+    public void run() {
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        owner.postMain(this, deliver);
+    }
+
+    private void deliver() {
+        List<C> delivered;
+        Throwable failure;
+        boolean finished;
+        synchronized (this) {
+            isScheduled = false;
+            if (state == CANCELLED) {
+                return;
+            }
+            delivered = chunks;
+            chunks = delivered.isEmpty() ? delivered : new ArrayList<>();
+            failure = error;
+            error = null;
+            finished = state != RUNNING && !isFinished;
+            if (finished) {
+                isFinished = true;
+            }
+        }
+        if (!delivered.isEmpty() || finished) {
+            isFirstDelivered = true;
+            hideLoading();
+        }
+        if (!delivered.isEmpty()) {
+            callback.onChunks(Collections.unmodifiableList(delivered));
+        }
+        if (!finished) {
+            return;
+        }
+        if (failure != null) {
+            owner.dispatchError(failure);
+        } else {
+            callback.onComplete();
+        }
+    }
+
+    private void showLoading() {
+        BaseView view = owner.getBaseView();
+        if (view != null && !isFirstDelivered && !isDone()) {
+            isLoadingShown = true;
+            view.showLoading();
+        }
+    }
+
+    private void hideLoading() {
+        if (!isLoadingShown) {
+            return;
+        }
+        isLoadingShown = false;
+        BaseView view = owner.getBaseView();
+        if (view != null) {
+            view.hideLoading();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.mct.components.baseui;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A unit of presenter work queued in a {@link PresenterLane}.
+ * <p>
+ * State changes are guarded by the task monitor. The lane lock may be held while taking the task
+ * lock, never the other way around.
+ * <p>
+ * Tasks whose handle never leaves the presenter are taken from a pool with {@link #obtain} and
+ * given back by the lane once done, like {@code Message.obtain}. With the pool queue of
+ * {@link PresenterExecutor} this makes {@code exec(Runnable)} allocation free in the steady
+ * state, covered by {@code PresenterLaneAllocationTest}: warm workers and at most
+ * {@link #MAX_POOL_SIZE} tasks waiting. Still allocating: a worker started after the others died
+ * idle, the tasks over the pool size, the growth of the pool queue, and a task whose handle is
+ * returned to the caller, which is never pooled since a stale handle could cancel another task.
+ */
+final class PresenterTask implements Runnable, BasePresenter.TaskHandle {
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int DONE = 2;
+    private static final int CANCELLED = 3;
+
+    private static final int MAX_POOL_SIZE = 50;
+    private static final Object sPoolLock = new Object();
+    private static PresenterTask sPool;
+    private static int sPoolSize;
+
+    /**
+     * Always null for a pooled task.
+     */
+    @Nullable
+    final Object key;
+    /**
+     * Ordinal of the {@link BasePresenter.Priority}, may be raised while queued.
+     */
+    int priority;
+    long enqueuedAt;
+    long seq;
+    /**
+     * Counted in the queue depth of {@link PresenterMetrics}.
+     */
+    boolean isMetered;
+    /**
+     * Intrusive links of the lane queue, guarded by the lane lock. {@link #next} also links the pool.
+     */
+    PresenterTask prev;
+    PresenterTask next;
+    boolean isQueued;
+    private final boolean isPooled;
+    private PresenterLane lane;
+    private Runnable body;
+    private Thread runner;
+    private int state;
+
+    private PresenterTask(@Nullable Object key, boolean isPooled) {
+        this.key = key;
+        this.isPooled = isPooled;
+    }
+
+    /**
+     * @return a recycled task, only for work whose handle is not handed out
+     */
+    @NonNull
+    static PresenterTask obtain(@NonNull PresenterLane lane, @NonNull Runnable body, int priority) {
+        PresenterTask task = null;
+        synchronized (sPoolLock) {
+            if (sPool != null) {
+                task = sPool;
+                sPool = task.next;
+                task.next = null;
+                sPoolSize--;
+            }
+        }
+        if (task == null) {
+            task = new PresenterTask(null, true);
+        }
+        task.init(lane, body, priority);
+        return task;
+    }
+
+    /**
+     * @return a new task, for work whose handle is handed out
+     */
+    @NonNull
+    static PresenterTask create(@NonNull PresenterLane lane, @Nullable Object key, @NonNull Runnable body, int priority) {
+        PresenterTask task = new PresenterTask(key, false);
+        task.init(lane, body, priority);
+        return task;
+    }
+
+    private void init(@NonNull PresenterLane lane, @NonNull Runnable body, int priority) {
+        this.lane = lane;
+        this.priority = priority;
+        synchronized (this) {
+            this.body = body;
+            state = QUEUED;
+        }
+    }
+
+    /**
+     * Give a pooled task back once the lane is done with it, does nothing for the other tasks.
+     */
+    void recycle() {
+        if (!isPooled) {
+            return;
+        }
+        synchronized (this) {
+            state = DONE;
+            body = null;
+            runner = null;
+        }
+        lane = null;
+        prev = null;
+        isQueued = false;
+        isMetered = false;
+        synchronized (sPoolLock) {
+            if (sPoolSize < MAX_POOL_SIZE) {
+                next = sPool;
+                sPool = this;
+                sPoolSize++;
+            } else {
+                next = null;
+            }
+        }
+    }
+
+    /**
+     * Swap the work of a task that has not started yet.
+     *
+     * @return false if the task is already running, done or cancelled
+     */
+    synchronized boolean replace(@NonNull Runnable body) {
+        if (state != QUEUED) {
+            return false;
+        }
+        this.body = body;
+        return true;
+    }
+
+    @Override
+    public void run() {
+        Runnable r;
+        synchronized (this) {
+            if (state != QUEUED) {
+                return;
+            }
+            state = RUNNING;
+            runner = Thread.currentThread();
+            r = body;
+        }
+        try {
+            r.run();
+        } catch (Throwable t) {
+            if (!isCancelled()) {
+                lane.dispatchError(t);
+            }
+        } finally {
+            synchronized (this) {
+                if (state == RUNNING) {
+                    state = DONE;
+                }
+                runner = null;
+                body = null;
+            }
+            // a cancel interrupt must not leak into the next task of the shared worker
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Cancel without unlinking, a running task is interrupted. For the lane, holding its lock.
+     *
+     * @return false if the task already finished or was cancelled
+     */
+    synchronized boolean markCancelled() {
+        if (state == RUNNING) {
+            state = CANCELLED;
+            runner.interrupt();
+            return true;
+        }
+        if (state != QUEUED) {
+            return false;
+        }
+        state = CANCELLED;
+        body = null;
+        return true;
+    }
+
+    @Override
+    public boolean cancel() {
+        boolean wasQueued;
+        synchronized (this) {
+            wasQueued = state == QUEUED;
+            if (!markCancelled()) {
+                return false;
+            }
+        }
+        if (wasQueued) {
+            lane.remove(this);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state >= DONE;
+    }
+}
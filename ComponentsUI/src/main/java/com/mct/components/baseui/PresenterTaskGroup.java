@@ -0,0 +1,122 @@
+package com.mct.components.baseui;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fan-out / fan-in of independent loads, see {@link BasePresenter#execAll(List, BasePresenter.Callback)}.
+ * <p>
+ * Every part runs in parallel on the shared pool. The combined result is delivered once all parts
+ * are done, in the order of the loaders. The first failure cancels the other parts and is the
+ * only one reported.
+ */
+final class PresenterTaskGroup<T> implements BasePresenter.TaskHandle {
+
+    private static final int RUNNING = 0;
+    private static final int DONE = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private final BasePresenter owner;
+    private final List<? extends BasePresenter.Loader<? extends T>> loaders;
+    private final BasePresenter.Callback<List<T>> callback;
+    private final Object[] results;
+    private final Future<?>[] futures;
+    private final AtomicInteger remaining;
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+    PresenterTaskGroup(@NonNull BasePresenter owner,
+                       @NonNull List<? extends BasePresenter.Loader<? extends T>> loaders,
+                       @NonNull BasePresenter.Callback<List<T>> callback) {
+        this.owner = owner;
+        this.loaders = new ArrayList<>(loaders);
+        this.callback = callback;
+        this.results = new Object[loaders.size()];
+        this.futures = new Future<?>[loaders.size()];
+        this.remaining = new AtomicInteger(loaders.size());
+    }
+
+    void start(@NonNull Executor pool) {
+        if (results.length == 0) {
+            complete();
+            return;
+        }
+        synchronized (this) {
+            for (int i = 0; i < results.length; i++) {
+                if (state.get() != RUNNING) {
+                    return;
+                }
+                final int index = i;
+                FutureTask<Void> part = new FutureTask<>(() -> runPart(index), null);
+                futures[i] = part;
+                pool.execute(part);
+            }
+        }
+    }
+
+    @Override
+    public boolean cancel() {
+        if (!state.compareAndSet(RUNNING, CANCELLED)) {
+            return false;
+        }
+        cancelParts();
+        owner.onTaskFinished(this);
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return state.get() == CANCELLED;
+    }
+
+    @Override
+    public boolean isDone() {
+        return state.get() != RUNNING;
+    }
+
+    private void runPart(int index) {
+        if (state.get() != RUNNING) {
+            return;
+        }
+        try {
+            results[index] = loaders.get(index).load();
+        } catch (Throwable t) {
+            if (state.compareAndSet(RUNNING, FAILED)) {
+                cancelParts();
+                owner.onTaskFinished(this);
+                owner.dispatchError(t);
+            }
+            return;
+        }
+        // the decrement publishes the result to the thread completing the group
+        if (remaining.decrementAndGet() == 0) {
+            complete();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete() {
+        if (!state.compareAndSet(RUNNING, DONE)) {
+            return;
+        }
+        owner.onTaskFinished(this);
+        List<T> combined = Collections.unmodifiableList(Arrays.asList((T[]) results));
+        owner.postMain(() -> callback.onResult(combined));
+    }
+
+    private synchronized void cancelParts() {
+        for (Future<?> future : futures) {
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+}
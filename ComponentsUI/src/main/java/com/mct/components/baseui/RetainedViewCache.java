@@ -0,0 +1,108 @@
+package com.mct.components.baseui;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Views of the {@link BaseFragment fragments} of a {@link BaseActivity} sent to the back stack,
+ * kept detached so popping back reuses them, see {@link BaseFragment#isRetainView()}.
+ * <p>
+ * The cache holds the views, not the fragments: a view is dropped when its fragment is destroyed,
+ * when the cache is over its limit (the oldest first) and when the activity is destroyed, so a
+ * view never outlives the activity it was inflated in. Main thread only.
+ * <p>
+ * A view is put before it is known whether its fragment goes to the back stack or is destroyed,
+ * so the limit is only enforced by {@link #trimToLimit()} once the transaction settled: a popped
+ * fragment must not evict a view of the back stack on its way out.
+ */
+final class RetainedViewCache {
+
+    static final int DEFAULT_LIMIT = 2;
+
+    // oldest first
+    private final LinkedHashMap<BaseFragment, View> views = new LinkedHashMap<>();
+    private int limit = DEFAULT_LIMIT;
+    private long hitCount;
+
+    @MainThread
+    void setLimit(int limit) {
+        this.limit = limit;
+        trim(limit);
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int size() {
+        return views.size();
+    }
+
+    long getHitCount() {
+        return hitCount;
+    }
+
+    @MainThread
+    void put(@NonNull BaseFragment fragment, @NonNull View view) {
+        if (limit == 0) {
+            return;
+        }
+        views.remove(fragment);
+        views.put(fragment, view);
+    }
+
+    /**
+     * @return the retained view of this fragment, detached from its previous parent, or null
+     */
+    @Nullable
+    @MainThread
+    View take(@NonNull BaseFragment fragment) {
+        View view = views.remove(fragment);
+        if (view == null) {
+            return null;
+        }
+        // still in the container while the exit animation of a quick pop runs
+        ViewParent parent = view.getParent();
+        if (parent instanceof ViewGroup) {
+            ((ViewGroup) parent).endViewTransition(view);
+            ((ViewGroup) parent).removeView(view);
+        }
+        hitCount++;
+        return view;
+    }
+
+    @MainThread
+    void remove(@NonNull BaseFragment fragment) {
+        views.remove(fragment);
+    }
+
+    /**
+     * Drop the oldest views over the limit, once the destroyed fragments removed theirs.
+     */
+    @MainThread
+    void trimToLimit() {
+        trim(limit);
+    }
+
+    @MainThread
+    void trim(int max) {
+        Iterator<BaseFragment> iterator = views.keySet().iterator();
+        while (views.size() > max && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    @MainThread
+    void clear() {
+        views.clear();
+    }
+}
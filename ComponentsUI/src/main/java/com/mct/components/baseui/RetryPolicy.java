@@ -0,0 +1,90 @@
+package com.mct.components.baseui;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy of {@link BasePresenter#exec(BasePresenter.Loader, RetryPolicy, long, BasePresenter.Callback)}.
+ * <p>
+ * The wait before retry n is {@code initialDelayMs * multiplier^(n - 1)}, capped to
+ * {@code maxDelayMs}, then reduced by a random part up to {@code jitter} of it so the clients
+ * of a failing server do not retry in step.
+ * <p>
+ * Override {@link #shouldRetry(Throwable)} to retry only some failures.
+ */
+public class RetryPolicy {
+
+    public static final long DEFAULT_MAX_DELAY_MS = 30 * 1000;
+    public static final float DEFAULT_MULTIPLIER = 2f;
+    public static final float DEFAULT_JITTER = 0.5f;
+
+    /**
+     * A single attempt.
+     */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0);
+
+    private final int maxAttempts;
+    private final long initialDelayMs;
+    private final long maxDelayMs;
+    private final float multiplier;
+    private final float jitter;
+
+    /**
+     * @param maxAttempts    attempts including the first one, >= 1
+     * @param initialDelayMs wait before the first retry
+     */
+    public RetryPolicy(int maxAttempts, long initialDelayMs) {
+        this(maxAttempts, initialDelayMs, DEFAULT_MAX_DELAY_MS, DEFAULT_MULTIPLIER, DEFAULT_JITTER);
+    }
+
+    /**
+     * @param maxAttempts    attempts including the first one, >= 1
+     * @param initialDelayMs wait before the first retry
+     * @param maxDelayMs     cap of a single wait
+     * @param multiplier     growth of the wait per retry, >= 1
+     * @param jitter         random part removed from a wait, in [0, 1]
+     */
+    public RetryPolicy(int maxAttempts, long initialDelayMs, long maxDelayMs, float multiplier, float jitter) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts < 1");
+        }
+        if (initialDelayMs < 0 || maxDelayMs < 0) {
+            throw new IllegalArgumentException("delay < 0");
+        }
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier < 1");
+        }
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("jitter must be in [0, 1]");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialDelayMs = initialDelayMs;
+        this.maxDelayMs = maxDelayMs;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return true to retry after this failure, when attempts are left. An interrupt is never retried.
+     */
+    public boolean shouldRetry(@NonNull Throwable t) {
+        return !(t instanceof InterruptedException);
+    }
+
+    /**
+     * @param retry 1 for the first retry
+     * @return wait before this retry
+     */
+    long getDelayMs(int retry) {
+        double delay = Math.min(maxDelayMs, initialDelayMs * Math.pow(multiplier, retry - 1));
+        if (jitter > 0) {
+            delay -= delay * jitter * ThreadLocalRandom.current().nextDouble();
+        }
+        return (long) delay;
+    }
+}
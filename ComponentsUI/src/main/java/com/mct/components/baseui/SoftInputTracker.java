@@ -0,0 +1,169 @@
+package com.mct.components.baseui;
+
+import android.graphics.Rect;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.WindowManager;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.core.view.OnApplyWindowInsetsListener;
+import androidx.core.view.ViewCompat;
+import androidx.core.view.WindowInsetsCompat;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Soft input state of a window, updated when its window insets change rather than measured on
+ * demand.
+ * <p>
+ * On API 30+ the IME insets are dispatched whatever the soft input mode of the window, so the
+ * state is always {@link #isAccurate() accurate}. Below it the IME is only part of the insets in
+ * {@code adjustResize}; in the other modes the state falls back to the visible display frame,
+ * measured on the layout passes, which pan or nothing modes may not trigger, and on
+ * {@link #sync()}. The listeners are only called when the visibility or the height changed.
+ * <p>
+ * The insets are observed on a zero sized view added first to the decor view, so the insets
+ * listener an app may set on the decor view is left alone. Main thread only.
+ */
+final class SoftInputTracker implements OnApplyWindowInsetsListener, ViewTreeObserver.OnGlobalLayoutListener {
+
+    // below this part of the window height, a frame inset is a navigation bar rather than the keyboard
+    private static final float MIN_HEIGHT_RATIO = 0.15f;
+
+    private final Rect frame = new Rect();
+    private final CopyOnWriteArrayList<BaseActivity.OnSoftInputChangedListener> listeners = new CopyOnWriteArrayList<>();
+    private ViewGroup rootView;
+    private View insetsView;
+    private boolean isVisible;
+    private int height = -1;
+
+    /**
+     * @param rootView the decor view
+     */
+    @MainThread
+    void attach(@NonNull ViewGroup rootView) {
+        if (this.rootView == rootView) {
+            return;
+        }
+        detach();
+        this.rootView = rootView;
+        // first child, the insets reach it before the content may consume them
+        insetsView = new View(rootView.getContext());
+        ViewCompat.setOnApplyWindowInsetsListener(insetsView, this);
+        rootView.addView(insetsView, 0, new ViewGroup.LayoutParams(0, 0));
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+            rootView.getViewTreeObserver().addOnGlobalLayoutListener(this);
+        }
+    }
+
+    @MainThread
+    void detach() {
+        if (rootView != null) {
+            ViewCompat.setOnApplyWindowInsetsListener(insetsView, null);
+            rootView.removeView(insetsView);
+            insetsView = null;
+            ViewTreeObserver observer = rootView.getViewTreeObserver();
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R && observer.isAlive()) {
+                observer.removeOnGlobalLayoutListener(this);
+            }
+            rootView = null;
+        }
+    }
+
+    boolean isVisible() {
+        return isVisible;
+    }
+
+    /**
+     * @return -1 if hidden
+     */
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return true if every change of the soft input reaches this tracker, false when the state
+     * may be stale: below API 30 outside {@code adjustResize}
+     */
+    boolean isAccurate() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return true;
+        }
+        ViewGroup.LayoutParams params = rootView != null ? rootView.getLayoutParams() : null;
+        return params instanceof WindowManager.LayoutParams
+                && (((WindowManager.LayoutParams) params).softInputMode & WindowManager.LayoutParams.SOFT_INPUT_MASK_ADJUST)
+                == WindowManager.LayoutParams.SOFT_INPUT_ADJUST_RESIZE;
+    }
+
+    /**
+     * Measure the state right away when it may be stale, a visible display frame query.
+     */
+    @MainThread
+    void sync() {
+        View root = rootView;
+        if (root != null && !isAccurate()) {
+            measureFrame(root);
+        }
+    }
+
+    void addListener(@NonNull BaseActivity.OnSoftInputChangedListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    void removeListener(@NonNull BaseActivity.OnSoftInputChangedListener listener) {
+        listeners.remove(listener);
+    }
+
+    @NonNull
+    @Override
+    public WindowInsetsCompat onApplyWindowInsets(@NonNull View v, @NonNull WindowInsetsCompat insets) {
+        if (isAccurate()) {
+            boolean visible = insets.isVisible(WindowInsetsCompat.Type.ime());
+            update(visible, visible ? insets.getInsets(WindowInsetsCompat.Type.ime()).bottom : -1);
+        }
+        return ViewCompat.onApplyWindowInsets(v, insets);
+    }
+
+    /**
+     * Fallback below API 30 outside {@code adjustResize}.
+     */
+    @Override
+    public void onGlobalLayout() {
+        View root = rootView;
+        if (root == null || isAccurate()) {
+            return;
+        }
+        // the visible display frame is a window manager query, no text editor focused means no
+        // keyboard to show
+        if (!isVisible && !isTextEditorFocused(root)) {
+            return;
+        }
+        measureFrame(root);
+    }
+
+    private void measureFrame(@NonNull View root) {
+        root.getWindowVisibleDisplayFrame(frame);
+        int imeHeight = root.getHeight() - frame.bottom;
+        boolean visible = imeHeight > root.getHeight() * MIN_HEIGHT_RATIO;
+        update(visible, visible ? imeHeight : -1);
+    }
+
+    private static boolean isTextEditorFocused(@NonNull View root) {
+        View focus = root.findFocus();
+        return focus != null && focus.onCheckIsTextEditor();
+    }
+
+    private void update(boolean visible, int newHeight) {
+        if (visible == isVisible && newHeight == height) {
+            return;
+        }
+        isVisible = visible;
+        height = newHeight;
+        for (BaseActivity.OnSoftInputChangedListener listener : listeners) {
+            listener.onSoftInputChanged(visible, newHeight);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.mct.components.utils;
 
 import android.content.Context;
+import android.content.res.Resources;
 import android.graphics.Color;
+import android.graphics.drawable.Drawable;
 import android.graphics.drawable.GradientDrawable;
 import android.util.DisplayMetrics;
 import android.view.Gravity;
@@ -12,16 +14,28 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.mct.components.R;
 
 public class ToastUtils {
 
-    public static int INFO = 1;
-    public static int ERROR = 2;
-    public static int SUCCESS = 3;
-    public static int WARNING = 4;
-    public static int DEFAULT = 5;
+    public static final int INFO = 1;
+    public static final int ERROR = 2;
+    public static final int SUCCESS = 3;
+    public static final int WARNING = 4;
+    public static final int DEFAULT = 5;
+
+    // background color and icon per type, indexed by the type value, an unknown type is DEFAULT
+    private static final int[] COLORS = {0, 0xFF00B0FF, 0xFFFF3D00, 0xFF1EDD00, 0xFFFFC400, 0xFF555555};
+    private static final int[] ICONS = {0,
+            R.drawable.cpui_ic_toast_info,
+            R.drawable.cpui_ic_toast_error,
+            R.drawable.cpui_ic_toast_success,
+            R.drawable.cpui_ic_toast_warning,
+            0};
+
+    private static Style sStyle;
 
     /**
      * @param context context to initialise toast.
@@ -99,83 +113,119 @@ public class ToastUtils {
      */
     @NonNull
     public static Toast makeText(Context context, int duration, int type, String message, boolean isShowIcon) {
-        ToastView toastView = new ToastView(context, type, message, isShowIcon);
+        return makeText(context, duration, type, message, isShowIcon, null);
+    }
+
+    /**
+     * Same as {@link #makeText(Context, int, int, String, boolean)}, reusing the view of a
+     * previous toast of this context when it is no longer on screen, such as a cancelled toast.
+     * The previous toast must not be shown again.
+     *
+     * @param previous toast to take the view from, may be null
+     */
+    @NonNull
+    public static Toast makeText(Context context, int duration, int type, String message, boolean isShowIcon,
+                                 @Nullable Toast previous) {
+        ToastView toastView = null;
+        if (previous != null && previous.getView() instanceof ToastView) {
+            View view = previous.getView();
+            if (view.getContext() == context && view.getParent() == null && !view.isAttachedToWindow()) {
+                toastView = (ToastView) view;
+                previous.setView(null);
+            }
+        }
+        if (toastView == null) {
+            toastView = new ToastView(context);
+        }
+        toastView.bind(type, message, isShowIcon);
         Toast toast = new Toast(context);
         toast.setDuration(duration);
         toast.setView(toastView);
         return toast;
     }
 
+    /**
+     * @return the pixel sizes and backgrounds of the toasts for the density of these resources
+     */
+    @NonNull
+    private static synchronized Style getStyle(@NonNull Resources res) {
+        int densityDpi = res.getDisplayMetrics().densityDpi;
+        Style style = sStyle;
+        if (style == null || style.densityDpi != densityDpi) {
+            sStyle = style = new Style(densityDpi);
+        }
+        return style;
+    }
+
+    /**
+     * Computed once per density, the backgrounds are shared through their constant state.
+     */
+    private static class Style {
+
+        final int densityDpi;
+        final int tbPadding;
+        final int lrPadding;
+        final int imgSize;
+        final int childMargin;
+        final Drawable.ConstantState[] backgrounds = new Drawable.ConstantState[COLORS.length];
+
+        Style(int densityDpi) {
+            this.densityDpi = densityDpi;
+            tbPadding = convertDpToPixel(6);
+            lrPadding = convertDpToPixel(12);
+            imgSize = convertDpToPixel(24);
+            childMargin = convertDpToPixel(4);
+            int cornerRadius = convertDpToPixel(100);
+            for (int type = 1; type < COLORS.length; type++) {
+                GradientDrawable drawable = new GradientDrawable();
+                drawable.setShape(GradientDrawable.RECTANGLE);
+                drawable.setCornerRadius(cornerRadius);
+                drawable.setColor(COLORS[type]);
+                backgrounds[type] = drawable.getConstantState();
+            }
+        }
+
+        int convertDpToPixel(int dp) {
+            return dp * densityDpi / DisplayMetrics.DENSITY_DEFAULT;
+        }
+    }
+
     private static class ToastView extends LinearLayout {
 
         final ImageView imgIcon;
         final TextView tvMessage;
 
-        ToastView(Context context, int type, String message, boolean isShowIcon) {
+        ToastView(Context context) {
             super(context);
-            int tbPadding = convertDpToPixel(6);
-            int lrPadding = convertDpToPixel(12);
-            int imgSize = convertDpToPixel(24);
-            int childMargin = convertDpToPixel(4);
+            Style style = getStyle(getResources());
+            int childMargin = style.childMargin;
 
             setGravity(Gravity.CENTER);
-            setPadding(lrPadding, tbPadding, lrPadding, tbPadding);
+            setPadding(style.lrPadding, style.tbPadding, style.lrPadding, style.tbPadding);
 
             imgIcon = new ImageView(context);
-            LayoutParams iconParam = new LayoutParams(imgSize, imgSize);
+            LayoutParams iconParam = new LayoutParams(style.imgSize, style.imgSize);
             iconParam.setMargins(childMargin, childMargin, childMargin, childMargin);
             addView(imgIcon, iconParam);
 
             tvMessage = new TextView(context);
             tvMessage.setTextColor(Color.WHITE);
             tvMessage.setTextSize(16);
-            tvMessage.setText(message);
-            tvMessage.setGravity(isShowIcon ? Gravity.START : Gravity.CENTER);
             LayoutParams messageParam = new LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
             messageParam.setMargins(childMargin, childMargin, childMargin, childMargin);
             addView(tvMessage, messageParam);
-
-            setIconVisibility(isShowIcon ? View.VISIBLE : View.GONE);
-            if (type == SUCCESS) {
-                init(getColor("#1EDD00"), R.drawable.cpui_ic_toast_success);
-            } else if (type == ERROR) {
-                init(getColor("#FF3D00"), R.drawable.cpui_ic_toast_error);
-            } else if (type == WARNING) {
-                init(getColor("#FFC400"), R.drawable.cpui_ic_toast_warning);
-            } else if (type == INFO) {
-                init(getColor("#00B0FF"), R.drawable.cpui_ic_toast_info);
-            } else if (type == DEFAULT) {
-                init(getColor("#555555"), -1);
-            }
-        }
-
-        void init(int bgColor, int icon) {
-            setBgColor(bgColor);
-            setIcon(icon);
-        }
-
-        void setBgColor(int bgColor) {
-            GradientDrawable drawable = new GradientDrawable();
-            drawable.setShape(GradientDrawable.RECTANGLE);
-            drawable.setCornerRadius(convertDpToPixel(100));
-            drawable.setColor(bgColor);
-            setBackground(drawable);
         }
 
-        void setIcon(int icon) {
-            imgIcon.setImageResource(icon);
-        }
-
-        void setIconVisibility(int visibility) {
-            imgIcon.setVisibility(visibility);
-        }
-
-        int convertDpToPixel(int dp) {
-            return dp * getResources().getDisplayMetrics().densityDpi / DisplayMetrics.DENSITY_DEFAULT;
-        }
-
-        int getColor(String color) {
-            return Color.parseColor(color);
+        void bind(int type, String message, boolean isShowIcon) {
+            tvMessage.setText(message);
+            tvMessage.setGravity(isShowIcon ? Gravity.START : Gravity.CENTER);
+            imgIcon.setVisibility(isShowIcon ? View.VISIBLE : View.GONE);
+            if (type < INFO || type > DEFAULT) {
+                type = DEFAULT;
+            }
+            Style style = getStyle(getResources());
+            setBackground(style.backgrounds[type].newDrawable(getResources()));
+            imgIcon.setImageResource(ICONS[type]);
         }
     }
 
@@ -0,0 +1,195 @@
+package com.mct.components.baseui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import androidx.fragment.app.FragmentManager;
+
+import org.junit.Test;
+
+public class BackStackIndexTest {
+
+    private static final String A = "A";
+    private static final String B = "B";
+    private static final String C = "C";
+
+    @Test
+    public void pushIndexesEveryPosition() {
+        BackStackIndex index = indexOf(A, B, A);
+
+        assertEquals(3, index.size());
+        assertEquals(2, index.lastIndexOf(A));
+        assertEquals(1, index.lastIndexOf(B));
+        assertEquals(-1, index.lastIndexOf(C));
+        assertEquals(2, index.count(A));
+        assertEquals(1, index.count(B));
+        assertEquals(0, index.count(C));
+        assertEquals(2, index.idAt(1));
+    }
+
+    @Test
+    public void popDropsTheTopEntry() {
+        BackStackIndex index = indexOf(A, B, A);
+
+        index.pop();
+
+        assertEquals(2, index.size());
+        assertEquals(0, index.lastIndexOf(A));
+        assertEquals(1, index.count(A));
+        assertEquals(1, index.lastIndexOf(B));
+    }
+
+    @Test
+    public void popOnEmptyDoesNothing() {
+        BackStackIndex index = new BackStackIndex();
+
+        index.pop();
+
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void truncateUpdatesPositionsAndCounts() {
+        BackStackIndex index = indexOf(A, B, A, C, B);
+
+        index.truncate(2);
+
+        assertEquals(2, index.size());
+        assertEquals(0, index.lastIndexOf(A));
+        assertEquals(1, index.lastIndexOf(B));
+        assertEquals(-1, index.lastIndexOf(C));
+        assertEquals(1, index.count(A));
+        assertEquals(1, index.count(B));
+        assertEquals(0, index.count(C));
+    }
+
+    @Test
+    public void truncateAboveSizeDoesNothing() {
+        BackStackIndex index = indexOf(A, B);
+
+        index.truncate(5);
+
+        assertEquals(2, index.size());
+        assertEquals(1, index.lastIndexOf(B));
+    }
+
+    @Test
+    public void clearForgetsEveryName() {
+        BackStackIndex index = indexOf(A, B, A);
+
+        index.clear();
+
+        assertEquals(0, index.size());
+        assertEquals(-1, index.lastIndexOf(A));
+        assertEquals(0, index.count(A));
+        assertEquals(0, index.count(B));
+    }
+
+    @Test
+    public void pushAfterTruncateReusesPositions() {
+        BackStackIndex index = indexOf(A, B, C);
+        index.truncate(1);
+
+        index.push(10, C);
+
+        assertEquals(2, index.size());
+        assertEquals(1, index.lastIndexOf(C));
+        assertEquals(1, index.count(C));
+        assertEquals(-1, index.lastIndexOf(B));
+        assertEquals(10, index.idAt(1));
+    }
+
+    @Test
+    public void growsPastItsInitialCapacity() {
+        BackStackIndex index = new BackStackIndex();
+        for (int i = 0; i < 40; i++) {
+            index.push(i, i % 2 == 0 ? A : B);
+        }
+
+        assertEquals(40, index.size());
+        assertEquals(38, index.lastIndexOf(A));
+        assertEquals(39, index.lastIndexOf(B));
+        assertEquals(20, index.count(A));
+        assertEquals(25, index.idAt(25));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void idAtRejectsPositionPastTop() {
+        indexOf(A).idAt(1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void idAtRejectsNegativePosition() {
+        indexOf(A).idAt(-1);
+    }
+
+    @Test
+    public void syncKeepsAMatchingIndex() {
+        BackStackIndex index = indexOf(A, B);
+        FragmentManager fm = fragmentManager(new int[]{1, 2}, A, B);
+
+        assertFalse(index.sync(fm));
+        assertEquals(2, index.size());
+        assertEquals(1, index.lastIndexOf(B));
+    }
+
+    @Test
+    public void syncRebuildsWhenTheSizeDrifted() {
+        BackStackIndex index = indexOf(A, B);
+        FragmentManager fm = fragmentManager(new int[]{10, 11, 12}, A, C, null);
+
+        assertTrue(index.sync(fm));
+        assertEquals(3, index.size());
+        assertEquals(0, index.count(B));
+        assertEquals(1, index.lastIndexOf(C));
+        // an unnamed entry is indexed under the empty name
+        assertEquals(2, index.lastIndexOf(""));
+        assertEquals(12, index.idAt(2));
+    }
+
+    @Test
+    public void syncRebuildsWhenTheTopIdDrifted() {
+        BackStackIndex index = indexOf(A, B);
+        FragmentManager fm = fragmentManager(new int[]{1, 7}, A, C);
+
+        assertTrue(index.sync(fm));
+        assertEquals(0, index.count(B));
+        assertEquals(1, index.lastIndexOf(C));
+        assertEquals(7, index.idAt(1));
+    }
+
+    @Test
+    public void syncEmptiesTheIndex() {
+        BackStackIndex index = indexOf(A, B);
+
+        assertTrue(index.sync(fragmentManager(new int[0])));
+        assertEquals(0, index.size());
+        assertEquals(-1, index.lastIndexOf(A));
+    }
+
+    /**
+     * @return an index of these names, with the ids 1, 2, 3...
+     */
+    private static BackStackIndex indexOf(String... names) {
+        BackStackIndex index = new BackStackIndex();
+        for (int i = 0; i < names.length; i++) {
+            index.push(i + 1, names[i]);
+        }
+        return index;
+    }
+
+    private static FragmentManager fragmentManager(int[] ids, String... names) {
+        FragmentManager fm = mock(FragmentManager.class);
+        when(fm.getBackStackEntryCount()).thenReturn(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            FragmentManager.BackStackEntry entry = mock(FragmentManager.BackStackEntry.class);
+            when(entry.getId()).thenReturn(ids[i]);
+            when(entry.getName()).thenReturn(names[i]);
+            when(fm.getBackStackEntryAt(i)).thenReturn(entry);
+        }
+        return fm;
+    }
+}
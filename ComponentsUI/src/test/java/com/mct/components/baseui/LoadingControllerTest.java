@@ -0,0 +1,103 @@
+package com.mct.components.baseui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The handler never runs anything and the clock stands still in local unit tests, so a pending
+ * show or hide stays pending.
+ */
+public class LoadingControllerTest {
+
+    private int showCount;
+    private int hideCount;
+    private LoadingController controller;
+
+    @Before
+    public void setUp() {
+        controller = new LoadingController(() -> showCount++, () -> hideCount++);
+    }
+
+    @Test
+    public void nestedCallsShowAndHideOnce() {
+        controller.setTimings(0, 0);
+
+        controller.show();
+        controller.show();
+        controller.hide();
+
+        assertEquals(1, showCount);
+        assertEquals(0, hideCount);
+        assertTrue(controller.isShown());
+
+        controller.hide();
+
+        assertEquals(1, hideCount);
+        assertFalse(controller.isShown());
+    }
+
+    @Test
+    public void extraHideIsIgnored() {
+        controller.setTimings(0, 0);
+
+        controller.hide();
+        controller.show();
+        controller.hide();
+        controller.hide();
+        controller.show();
+
+        assertEquals(2, showCount);
+        assertEquals(1, hideCount);
+        assertTrue(controller.isShown());
+    }
+
+    @Test
+    public void hideWithinTheShowDelayShowsNothing() {
+        controller.show();
+        controller.hide();
+
+        assertEquals(0, showCount);
+        assertEquals(0, hideCount);
+        assertFalse(controller.isShown());
+    }
+
+    @Test
+    public void showDuringTheMinShowTimeKeepsTheLoading() {
+        controller.setTimings(0, 500);
+
+        controller.show();
+        controller.hide();
+
+        assertTrue(controller.isShown());
+        assertEquals(0, hideCount);
+
+        controller.show();
+        controller.hide();
+        controller.show();
+
+        assertEquals(1, showCount);
+        assertEquals(0, hideCount);
+    }
+
+    @Test
+    public void resetHidesRightAway() {
+        controller.setTimings(0, 500);
+        controller.show();
+        controller.show();
+
+        controller.reset();
+
+        assertEquals(1, hideCount);
+        assertFalse(controller.isShown());
+
+        controller.hide();
+        controller.show();
+
+        assertEquals(2, showCount);
+        assertEquals(1, hideCount);
+    }
+}
@@ -0,0 +1,124 @@
+package com.mct.components.baseui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PresenterCacheTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final List<Object> results = new CopyOnWriteArrayList<>();
+    private final AtomicInteger loadCount = new AtomicInteger();
+    private BasePresenter presenter;
+
+    @Before
+    public void setUp() {
+        PresenterCache.clear();
+        // the main looper never runs in local unit tests, deliver in place
+        presenter = new BasePresenter(null) {
+            @Override
+            protected void postMain(Runnable r) {
+                r.run();
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        presenter.release();
+        PresenterCache.clear();
+    }
+
+    @Test
+    public void concurrentLoadsShareOneComputation() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BasePresenter.Loader<String> loader = blockingLoader("value", release);
+
+        presenter.load("key", loader, results::add);
+        presenter.load("key", loader, results::add);
+        release.countDown();
+        awaitResults(2);
+
+        assertEquals(1, loadCount.get());
+        assertEquals(1, PresenterCache.size());
+    }
+
+    @Test
+    public void freshValueIsNotComputedAgain() throws Exception {
+        presenter.load("key", () -> {
+            loadCount.incrementAndGet();
+            return "value";
+        }, results::add);
+        awaitResults(1);
+
+        presenter.load("key", () -> {
+            loadCount.incrementAndGet();
+            return "other";
+        }, results::add);
+
+        assertEquals(1, loadCount.get());
+        assertEquals("value", results.get(1));
+    }
+
+    @Test
+    public void invalidateDuringALoadDropsItsValue() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        presenter.load("key", blockingLoader("before", release), results::add);
+
+        PresenterCache.invalidate("key");
+        release.countDown();
+        awaitResults(1);
+
+        // the waiter still gets the value, the cache does not keep it
+        assertEquals("before", results.get(0));
+        assertEquals(0, PresenterCache.size());
+    }
+
+    @Test
+    public void loadAfterInvalidateDoesNotJoinTheOldComputation() throws Exception {
+        CountDownLatch releaseOld = new CountDownLatch(1);
+        presenter.load("key", blockingLoader("before", releaseOld), results::add);
+        PresenterCache.invalidate("key");
+
+        presenter.load("key", () -> {
+            loadCount.incrementAndGet();
+            return "after";
+        }, results::add);
+        awaitResults(1);
+        releaseOld.countDown();
+        awaitResults(2);
+
+        assertEquals(2, loadCount.get());
+        assertEquals("after", results.get(0));
+        // the late old computation does not overwrite the new value
+        results.clear();
+        presenter.load("key", () -> "unused", results::add);
+        assertEquals("after", results.get(0));
+    }
+
+    private <T> BasePresenter.Loader<T> blockingLoader(T value, CountDownLatch release) {
+        return () -> {
+            loadCount.incrementAndGet();
+            assertTrue(release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            return value;
+        };
+    }
+
+    private void awaitResults(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (results.size() < count) {
+            assertTrue("timed out waiting for " + count + " results", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.mct.components.baseui;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Steady state allocations of {@link BasePresenter#exec(Runnable)}, from the submission to the
+ * drain on the pool, counted with the per thread allocation counters of the HotSpot JVM.
+ */
+public class PresenterLaneAllocationTest {
+
+    private static final int WARM_UP_ROUNDS = 5_000;
+    private static final int ROUNDS = 5_000;
+    // below the size of the task pool
+    private static final int BATCH = 16;
+    // the counters are read through reflection, which boxes a few values around the measure
+    private static final long READ_OVERHEAD_BYTES = 4096;
+
+    private final AtomicInteger done = new AtomicInteger();
+    private final Runnable body = done::incrementAndGet;
+    private BasePresenter presenter;
+    private Object threadBean;
+    private Method getThreadAllocatedBytes;
+
+    @Before
+    public void setUp() throws Exception {
+        Object bean = null;
+        Method method = null;
+        try {
+            bean = Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getThreadMXBean").invoke(null);
+            Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+            if (beanClass.isInstance(bean)
+                    && (Boolean) beanClass.getMethod("isThreadAllocatedMemorySupported").invoke(bean)) {
+                beanClass.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(bean, true);
+                method = beanClass.getMethod("getThreadAllocatedBytes", long.class);
+            }
+        } catch (ClassNotFoundException e) {
+            // not a HotSpot JVM
+        }
+        assumeTrue("per thread allocation counters are not available", method != null);
+        threadBean = bean;
+        getThreadAllocatedBytes = method;
+        presenter = new BasePresenter(null) {
+        };
+    }
+
+    @After
+    public void tearDown() {
+        if (presenter != null) {
+            presenter.release();
+        }
+    }
+
+    @Test
+    public void execAllocatesNothingInSteadyState() throws Exception {
+        runRounds(WARM_UP_ROUNDS);
+        List<Thread> threads = presenterThreads();
+        threads.add(Thread.currentThread());
+
+        long before = allocatedBytes(threads);
+        runRounds(ROUNDS);
+        long allocated = allocatedBytes(threads) - before;
+
+        assertTrue("no new worker must start while measuring " + threads + " / " + presenterThreads(), threads.size() - 1 == presenterThreads().size());
+        assertTrue(allocated + " bytes allocated by " + ROUNDS * BATCH + " tasks",
+                allocated < READ_OVERHEAD_BYTES);
+    }
+
+    /**
+     * Every round submits a batch, waits for the lane to drain it and for the worker to be idle
+     * again, so every round schedules the lane on the pool.
+     */
+    private void runRounds(int rounds) {
+        PresenterExecutor.Pool pool = (PresenterExecutor.Pool) PresenterExecutor.getPool();
+        for (int i = 0; i < rounds; i++) {
+            int target = done.get() + BATCH;
+            for (int j = 0; j < BATCH; j++) {
+                presenter.exec(body);
+            }
+            while (done.get() < target || pool.getIdleCount() < pool.getWorkerCount()) {
+                Thread.yield();
+            }
+        }
+    }
+
+    private List<Thread> presenterThreads() {
+        List<Thread> threads = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("MCT_Presenter")) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    private long allocatedBytes(List<Thread> threads) throws Exception {
+        long total = 0;
+        for (Thread thread : threads) {
+            total += (Long) getThreadAllocatedBytes.invoke(threadBean, thread.getId());
+        }
+        return total;
+    }
+}
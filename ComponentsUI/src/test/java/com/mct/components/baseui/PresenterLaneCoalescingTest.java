@@ -0,0 +1,132 @@
+package com.mct.components.baseui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The lane runs on an executor drained by the test, so the tasks wait until {@link #drain()}.
+ */
+public class PresenterLaneCoalescingTest {
+
+    private static final int USER_VISIBLE = BasePresenter.Priority.USER_VISIBLE.ordinal();
+    private static final int BACKGROUND = BasePresenter.Priority.BACKGROUND.ordinal();
+    private static final int IMMEDIATE = BasePresenter.Priority.IMMEDIATE.ordinal();
+
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final List<String> ran = new ArrayList<>();
+    private PresenterLane lane;
+
+    @Before
+    public void setUp() {
+        lane = new PresenterLane(scheduled::add, new BasePresenter(null) {
+        });
+    }
+
+    @Test
+    public void sameKeyReplacesTheWaitingWorkInPlace() {
+        BasePresenter.TaskHandle first = lane.submit("key", record("a"), USER_VISIBLE);
+        lane.submit(null, record("b"), USER_VISIBLE);
+        BasePresenter.TaskHandle second = lane.submit("key", record("c"), USER_VISIBLE);
+
+        drain();
+
+        assertSame(first, second);
+        // the latest work, at the position of the first submission
+        assertEquals(Arrays.asList("c", "b"), ran);
+        assertTrue(first.isDone());
+        assertFalse(first.isCancelled());
+    }
+
+    @Test
+    public void coalescingRaisesThePriority() {
+        lane.submit("key", record("a"), BACKGROUND);
+        lane.submit(null, record("b"), USER_VISIBLE);
+        lane.submit("key", record("c"), IMMEDIATE);
+
+        drain();
+
+        assertEquals(Arrays.asList("c", "b"), ran);
+    }
+
+    @Test
+    public void coalescingNeverLowersThePriority() {
+        lane.submit("key", record("a"), IMMEDIATE);
+        lane.submit(null, record("b"), USER_VISIBLE);
+        lane.submit("key", record("c"), BACKGROUND);
+
+        drain();
+
+        assertEquals(Arrays.asList("c", "b"), ran);
+    }
+
+    @Test
+    public void nullKeyAlwaysQueues() {
+        BasePresenter.TaskHandle first = lane.submit(null, record("a"), USER_VISIBLE);
+        BasePresenter.TaskHandle second = lane.submit(null, record("b"), USER_VISIBLE);
+
+        drain();
+
+        assertNotSame(first, second);
+        assertEquals(Arrays.asList("a", "b"), ran);
+    }
+
+    @Test
+    public void keyIsFreeOnceTheTaskStarted() {
+        lane.submit("key", () -> {
+            ran.add("a");
+            // the running task is not replaced, this one queues after it
+            lane.submit("key", record("b"), USER_VISIBLE);
+        }, USER_VISIBLE);
+
+        drain();
+
+        assertEquals(Arrays.asList("a", "b"), ran);
+    }
+
+    @Test
+    public void cancelDropsTheWaitingTaskOfTheKey() {
+        BasePresenter.TaskHandle handle = lane.submit("key", record("a"), USER_VISIBLE);
+        lane.submit(null, record("b"), USER_VISIBLE);
+
+        assertTrue(lane.cancel("key"));
+        drain();
+
+        assertTrue(handle.isCancelled());
+        assertFalse(handle.cancel());
+        assertEquals(Arrays.asList("b"), ran);
+        // a new submission of the key queues a new task
+        assertNotSame(handle, lane.submit("key", record("c"), USER_VISIBLE));
+    }
+
+    @Test
+    public void closedLaneRefusesEverything() {
+        lane.submit("key", record("a"), USER_VISIBLE);
+        lane.cancelAll();
+
+        BasePresenter.TaskHandle handle = lane.submit("key", record("b"), USER_VISIBLE);
+        drain();
+
+        assertTrue(handle.isCancelled());
+        assertTrue(ran.isEmpty());
+    }
+
+    private Runnable record(String name) {
+        return () -> ran.add(name);
+    }
+
+    private void drain() {
+        while (!scheduled.isEmpty()) {
+            scheduled.remove(0).run();
+        }
+    }
+}
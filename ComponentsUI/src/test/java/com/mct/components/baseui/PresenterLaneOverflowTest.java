@@ -0,0 +1,180 @@
+package com.mct.components.baseui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Lanes of capacity 2 on an executor drained by the test. The looper is not mocked, so the test
+ * thread counts as the main thread and {@link BasePresenter.Overflow#BLOCK} can only reject here.
+ */
+public class PresenterLaneOverflowTest {
+
+    private static final int CAPACITY = 2;
+    private static final int USER_VISIBLE = BasePresenter.Priority.USER_VISIBLE.ordinal();
+    private static final int IDLE = BasePresenter.Priority.IDLE.ordinal();
+
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final List<String> ran = new ArrayList<>();
+    private final List<Runnable> rejected = new ArrayList<>();
+
+    @Test
+    public void dropNewestCancelsTheNewTask() {
+        PresenterLane lane = lane(BasePresenter.Overflow.DROP_NEWEST);
+        submit(lane, "a");
+        submit(lane, "b");
+
+        BasePresenter.TaskHandle handle = submit(lane, "c");
+        drain();
+
+        assertTrue(handle.isCancelled());
+        assertEquals(Arrays.asList("a", "b"), ran);
+        assertEquals(1, lane.getDroppedCount());
+        assertEquals(0, lane.getRejectedCount());
+        assertTrue(rejected.isEmpty());
+    }
+
+    @Test
+    public void dropOldestCancelsTheTaskWaitingTheLongest() {
+        PresenterLane lane = lane(BasePresenter.Overflow.DROP_OLDEST);
+        // the oldest whatever its priority
+        BasePresenter.TaskHandle oldest = lane.submit(null, record("a"), IDLE);
+        submit(lane, "b");
+
+        BasePresenter.TaskHandle handle = submit(lane, "c");
+        drain();
+
+        assertTrue(oldest.isCancelled());
+        assertFalse(handle.isCancelled());
+        assertEquals(Arrays.asList("b", "c"), ran);
+        assertEquals(1, lane.getDroppedCount());
+        assertEquals(0, lane.getRejectedCount());
+    }
+
+    @Test
+    public void dropOldestFreesItsKey() {
+        PresenterLane lane = lane(BasePresenter.Overflow.DROP_OLDEST);
+        BasePresenter.TaskHandle dropped = lane.submit("key", record("a"), USER_VISIBLE);
+        submit(lane, "b");
+        submit(lane, "c");
+
+        // the dropped task is not reused for its key
+        BasePresenter.TaskHandle handle = lane.submit("key", record("d"), USER_VISIBLE);
+        drain();
+
+        assertTrue(dropped.isCancelled());
+        assertFalse(handle.isCancelled());
+        assertEquals(Arrays.asList("c", "d"), ran);
+        assertEquals(2, lane.getDroppedCount());
+    }
+
+    @Test
+    public void rejectHandsTheTaskBack() {
+        PresenterLane lane = lane(BasePresenter.Overflow.REJECT);
+        submit(lane, "a");
+        submit(lane, "b");
+        Runnable body = record("c");
+
+        BasePresenter.TaskHandle handle = lane.submit(null, body, USER_VISIBLE);
+        drain();
+
+        assertTrue(handle.isCancelled());
+        assertEquals(Arrays.asList("a", "b"), ran);
+        assertEquals(1, lane.getRejectedCount());
+        assertEquals(0, lane.getDroppedCount());
+        assertEquals(1, rejected.size());
+        assertSame(body, rejected.get(0));
+    }
+
+    @Test
+    public void blockRejectsOnTheMainThread() {
+        PresenterLane lane = lane(BasePresenter.Overflow.BLOCK);
+        submit(lane, "a");
+        submit(lane, "b");
+        Runnable body = record("c");
+
+        BasePresenter.TaskHandle handle = lane.submit(null, body, USER_VISIBLE);
+        drain();
+
+        assertTrue(handle.isCancelled());
+        assertEquals(Arrays.asList("a", "b"), ran);
+        assertEquals(1, lane.getRejectedCount());
+        assertSame(body, rejected.get(0));
+    }
+
+    @Test
+    public void coalescedSubmissionNeedsNoRoom() {
+        PresenterLane lane = lane(BasePresenter.Overflow.REJECT);
+        BasePresenter.TaskHandle first = lane.submit("key", record("a"), USER_VISIBLE);
+        submit(lane, "b");
+
+        BasePresenter.TaskHandle handle = lane.submit("key", record("c"), USER_VISIBLE);
+        drain();
+
+        assertSame(first, handle);
+        assertEquals(Arrays.asList("c", "b"), ran);
+        assertEquals(0, lane.getRejectedCount());
+    }
+
+    @Test
+    public void runningTaskLeavesRoom() {
+        PresenterLane lane = lane(BasePresenter.Overflow.REJECT);
+        lane.submit(null, () -> {
+            ran.add("a");
+            // the lane holds only this running task, two more fit
+            submit(lane, "b");
+            submit(lane, "c");
+        }, USER_VISIBLE);
+
+        drain();
+
+        assertEquals(Arrays.asList("a", "b", "c"), ran);
+        assertEquals(0, lane.getRejectedCount());
+    }
+
+    @Test
+    public void raisedCapacityTakesMoreTasks() {
+        PresenterLane lane = lane(BasePresenter.Overflow.DROP_NEWEST);
+        submit(lane, "a");
+        submit(lane, "b");
+
+        lane.setCapacity(CAPACITY + 1, BasePresenter.Overflow.DROP_NEWEST);
+        submit(lane, "c");
+        drain();
+
+        assertEquals(Arrays.asList("a", "b", "c"), ran);
+        assertEquals(0, lane.getDroppedCount());
+    }
+
+    private PresenterLane lane(BasePresenter.Overflow overflow) {
+        PresenterLane lane = new PresenterLane(scheduled::add, new BasePresenter(null) {
+            @Override
+            protected void onTaskRejected(Runnable r) {
+                rejected.add(r);
+            }
+        });
+        lane.setCapacity(CAPACITY, overflow);
+        return lane;
+    }
+
+    private BasePresenter.TaskHandle submit(PresenterLane lane, String name) {
+        return lane.submit(null, record(name), USER_VISIBLE);
+    }
+
+    private Runnable record(String name) {
+        return () -> ran.add(name);
+    }
+
+    private void drain() {
+        while (!scheduled.isEmpty()) {
+            scheduled.remove(0).run();
+        }
+    }
+}
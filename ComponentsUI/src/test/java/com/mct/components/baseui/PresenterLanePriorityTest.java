@@ -0,0 +1,123 @@
+package com.mct.components.baseui;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The clock stands still in local unit tests, a task waited when its enqueue time is moved back.
+ */
+public class PresenterLanePriorityTest {
+
+    private static final int IMMEDIATE = BasePresenter.Priority.IMMEDIATE.ordinal();
+    private static final int USER_VISIBLE = BasePresenter.Priority.USER_VISIBLE.ordinal();
+    private static final int BACKGROUND = BasePresenter.Priority.BACKGROUND.ordinal();
+    private static final int IDLE = BasePresenter.Priority.IDLE.ordinal();
+
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final List<String> ran = new ArrayList<>();
+    private PresenterLane lane;
+
+    @Before
+    public void setUp() {
+        lane = new PresenterLane(scheduled::add, new BasePresenter(null) {
+        });
+    }
+
+    @Test
+    public void moreUrgentRunsFirst() {
+        submit("idle", IDLE);
+        submit("background", BACKGROUND);
+        submit("visible", USER_VISIBLE);
+        submit("immediate", IMMEDIATE);
+
+        drain();
+
+        assertEquals(Arrays.asList("immediate", "visible", "background", "idle"), ran);
+    }
+
+    @Test
+    public void samePriorityRunsInSubmissionOrder() {
+        submit("a", BACKGROUND);
+        submit("b", BACKGROUND);
+        submit("c", BACKGROUND);
+
+        drain();
+
+        assertEquals(Arrays.asList("a", "b", "c"), ran);
+    }
+
+    @Test
+    public void waitingRaisesOneLevelPerAgingStep() {
+        waited(submit("background", BACKGROUND), 2 * PresenterLane.AGING_STEP_MS);
+        submit("visible", USER_VISIBLE);
+
+        drain();
+
+        // raised to IMMEDIATE, ahead of a fresh USER_VISIBLE
+        assertEquals(Arrays.asList("background", "visible"), ran);
+    }
+
+    @Test
+    public void agedTaskTiesWithTheOlderFirst() {
+        waited(submit("background", BACKGROUND), PresenterLane.AGING_STEP_MS);
+        submit("visible", USER_VISIBLE);
+
+        drain();
+
+        // both rank USER_VISIBLE, the one submitted first wins
+        assertEquals(Arrays.asList("background", "visible"), ran);
+    }
+
+    @Test
+    public void partialStepDoesNotRaise() {
+        waited(submit("background", BACKGROUND), PresenterLane.AGING_STEP_MS - 1);
+        submit("visible", USER_VISIBLE);
+
+        drain();
+
+        assertEquals(Arrays.asList("visible", "background"), ran);
+    }
+
+    @Test
+    public void agingStopsAtImmediate() {
+        waited(submit("idle", IDLE), 100 * PresenterLane.AGING_STEP_MS);
+        submit("immediate", IMMEDIATE);
+
+        drain();
+
+        // both rank IMMEDIATE, the older first
+        assertEquals(Arrays.asList("idle", "immediate"), ran);
+    }
+
+    @Test
+    public void agedTaskPassesLessUrgentWork() {
+        submit("background", BACKGROUND);
+        waited(submit("idle", IDLE), 2 * PresenterLane.AGING_STEP_MS);
+        submit("visible", USER_VISIBLE);
+
+        drain();
+
+        // idle ranks USER_VISIBLE, ahead of the background and of the newer visible
+        assertEquals(Arrays.asList("idle", "visible", "background"), ran);
+    }
+
+    private PresenterTask submit(String name, int priority) {
+        return (PresenterTask) lane.submit(null, () -> ran.add(name), priority);
+    }
+
+    private static void waited(PresenterTask task, long ms) {
+        task.enqueuedAt -= ms;
+    }
+
+    private void drain() {
+        while (!scheduled.isEmpty()) {
+            scheduled.remove(0).run();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.mct.components.baseui;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class PresenterMetricsTest {
+
+    @After
+    public void tearDown() {
+        PresenterMetrics.setEnabled(false);
+        PresenterMetrics.reset();
+    }
+
+    @Test
+    public void countsTheErrorsRoutedToOnFalse() {
+        PresenterMetrics.setEnabled(true);
+        PresenterMetrics.reset();
+        BasePresenter presenter = new BasePresenter(null) {
+        };
+
+        presenter.dispatchError(new RuntimeException());
+
+        assertEquals(1, PresenterMetrics.getProcessSnapshot().errors);
+    }
+
+    @Test
+    public void ignoresTheErrorsAfterRelease() {
+        PresenterMetrics.setEnabled(true);
+        PresenterMetrics.reset();
+        BasePresenter presenter = new BasePresenter(null) {
+        };
+        presenter.release();
+
+        // a task finishing after the release, never routed to onFalse
+        presenter.dispatchError(new RuntimeException());
+
+        assertEquals(0, PresenterMetrics.getProcessSnapshot().errors);
+    }
+
+    @Test
+    public void recordsInPowerOfTwoBuckets() {
+        PresenterMetrics.Histogram histogram = new PresenterMetrics.Histogram();
+        histogram.record(0);
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(3);
+        histogram.record(4);
+
+        PresenterMetrics.HistogramSnapshot snapshot = histogram.snapshot();
+
+        // [0, 1), [1, 2), [2, 4), [4, 8)
+        assertEquals(1, snapshot.getBucket(0));
+        assertEquals(1, snapshot.getBucket(1));
+        assertEquals(2, snapshot.getBucket(2));
+        assertEquals(1, snapshot.getBucket(3));
+        assertEquals(5, snapshot.count);
+        assertEquals(10, snapshot.sumMs);
+        assertEquals(4, snapshot.maxMs);
+    }
+
+    @Test
+    public void negativeIsRecordedAsZero() {
+        PresenterMetrics.Histogram histogram = new PresenterMetrics.Histogram();
+        histogram.record(-5);
+
+        PresenterMetrics.HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertEquals(1, snapshot.getBucket(0));
+        assertEquals(0, snapshot.sumMs);
+    }
+
+    @Test
+    public void percentileIsTheUpperBoundOfItsBucketCappedToTheMax() {
+        PresenterMetrics.Histogram histogram = new PresenterMetrics.Histogram();
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(ms);
+        }
+
+        PresenterMetrics.HistogramSnapshot snapshot = histogram.snapshot();
+
+        // the 50th value is 50, in [32, 64)
+        assertEquals(64, snapshot.getPercentileMs(50));
+        // the 100th value is 100, in [64, 128), capped to the max
+        assertEquals(100, snapshot.getPercentileMs(100));
+        assertEquals(1, snapshot.getPercentileMs(0));
+        assertEquals(50.5, snapshot.getMeanMs(), 0.0001);
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        PresenterMetrics.HistogramSnapshot snapshot = new PresenterMetrics.Histogram().snapshot();
+
+        assertEquals(0, snapshot.getPercentileMs(95));
+        assertEquals(0, snapshot.getMeanMs(), 0);
+    }
+
+    @Test
+    public void lastBucketIsUnbounded() {
+        PresenterMetrics.Histogram histogram = new PresenterMetrics.Histogram();
+        histogram.record(Long.MAX_VALUE / 2);
+
+        PresenterMetrics.HistogramSnapshot snapshot = histogram.snapshot();
+
+        int last = PresenterMetrics.BUCKET_COUNT - 1;
+        assertEquals(1, snapshot.getBucket(last));
+        assertEquals(Long.MAX_VALUE, PresenterMetrics.HistogramSnapshot.getBucketUpperBoundMs(last));
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        PresenterMetrics.Histogram histogram = new PresenterMetrics.Histogram();
+        histogram.record(10);
+        histogram.reset();
+
+        PresenterMetrics.HistogramSnapshot snapshot = histogram.snapshot();
+
+        assertEquals(0, snapshot.count);
+        assertEquals(0, snapshot.maxMs);
+        assertEquals(0, snapshot.getBucket(4));
+    }
+}
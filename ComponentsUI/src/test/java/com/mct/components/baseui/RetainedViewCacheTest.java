@@ -0,0 +1,82 @@
+package com.mct.components.baseui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import android.view.View;
+
+import org.junit.Test;
+
+/**
+ * The activity puts the view in onDestroyView, removes it in onDestroy and trims once the back
+ * stack changed, the calls are made in that order here.
+ */
+public class RetainedViewCacheTest {
+
+    private final RetainedViewCache cache = new RetainedViewCache();
+    private final BaseFragment a = mock(BaseFragment.class);
+    private final BaseFragment b = mock(BaseFragment.class);
+    private final BaseFragment c = mock(BaseFragment.class);
+    private final View viewA = mock(View.class);
+    private final View viewB = mock(View.class);
+    private final View viewC = mock(View.class);
+
+    @Test
+    public void poppingAFragmentKeepsTheBackStackViews() {
+        // A and B sent to the back stack, C on top
+        cache.put(a, viewA);
+        cache.put(b, viewB);
+
+        // pop C
+        cache.put(c, viewC);
+        cache.remove(c);
+        cache.trimToLimit();
+
+        assertEquals(2, cache.size());
+        assertEquals(viewB, cache.take(b));
+        assertEquals(viewA, cache.take(a));
+    }
+
+    @Test
+    public void pushingOverTheLimitDropsTheOldest() {
+        cache.put(a, viewA);
+        cache.put(b, viewB);
+        cache.put(c, viewC);
+        cache.trimToLimit();
+
+        assertEquals(2, cache.size());
+        assertNull(cache.take(a));
+        assertNotNull(cache.take(b));
+        assertNotNull(cache.take(c));
+    }
+
+    @Test
+    public void takeCountsTheHits() {
+        cache.put(a, viewA);
+
+        assertEquals(viewA, cache.take(a));
+        assertNull(cache.take(a));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void zeroLimitRetainsNothing() {
+        cache.setLimit(0);
+        cache.put(a, viewA);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void lowerLimitTrimsRightAway() {
+        cache.put(a, viewA);
+        cache.put(b, viewB);
+
+        cache.setLimit(1);
+
+        assertNull(cache.take(a));
+        assertEquals(viewB, cache.take(b));
+    }
+}
@@ -0,0 +1,75 @@
+package com.mct.components.baseui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void delayGrowsByTheMultiplierUpToTheCap() {
+        RetryPolicy policy = new RetryPolicy(10, 100, 1000, 2f, 0f);
+
+        assertEquals(100, policy.getDelayMs(1));
+        assertEquals(200, policy.getDelayMs(2));
+        assertEquals(400, policy.getDelayMs(3));
+        assertEquals(800, policy.getDelayMs(4));
+        assertEquals(1000, policy.getDelayMs(5));
+        assertEquals(1000, policy.getDelayMs(9));
+    }
+
+    @Test
+    public void jitterOnlyShortensTheDelay() {
+        RetryPolicy policy = new RetryPolicy(5, 1000, 10_000, 2f, 0.5f);
+
+        for (int i = 0; i < 1000; i++) {
+            long delay = policy.getDelayMs(2);
+            assertTrue("delay " + delay, delay >= 1000 && delay <= 2000);
+        }
+    }
+
+    @Test
+    public void zeroInitialDelayRetriesRightAway() {
+        RetryPolicy policy = new RetryPolicy(3, 0);
+
+        assertEquals(0, policy.getDelayMs(1));
+        assertEquals(0, policy.getDelayMs(2));
+    }
+
+    @Test
+    public void noneIsASingleAttempt() {
+        assertEquals(1, RetryPolicy.NONE.getMaxAttempts());
+    }
+
+    @Test
+    public void interruptIsNeverRetried() {
+        RetryPolicy policy = new RetryPolicy(3, 10);
+
+        assertFalse(policy.shouldRetry(new InterruptedException()));
+        assertTrue(policy.shouldRetry(new IOException()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNoAttempt() {
+        new RetryPolicy(0, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeDelay() {
+        new RetryPolicy(3, -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShrinkingMultiplier() {
+        new RetryPolicy(3, 10, 100, 0.5f, 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsJitterAboveOne() {
+        new RetryPolicy(3, 10, 100, 2f, 1.5f);
+    }
+}